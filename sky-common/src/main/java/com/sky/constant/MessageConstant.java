@@ -26,5 +26,12 @@ public class MessageConstant {
     public static final String ALREADY_EXISTS = "用户名已存在";
 
     public static final String PRICE_ERROR = "价格异常";
+    public static final String EXPORT_DATE_ERROR = "开始日期不能晚于结束日期";
+    public static final String EXPORT_RANGE_TOO_LARGE = "导出日期范围过大";
+    public static final String EXPORT_JOB_NOT_FOUND = "导出任务不存在或已过期";
+    public static final String EXPORT_JOB_NOT_FINISHED = "导出任务尚未完成";
+    public static final String EXPORT_JOB_BUSY = "导出任务过多，请稍后再试";
+    public static final String EXPORT_FAILED = "导出失败";
+    public static final String EXPORT_JOB_INTERRUPTED = "导出任务已中断，请重新提交";
 
 }
@@ -5,13 +5,45 @@ import java.util.concurrent.TimeUnit;
 
 public class RedisConstant {
     public static final String DISH_KEY = "dish:";
-    public static final Long DISH_TTL = 30L;
-    public static final TimeUnit DISH_TTL_Unit = TimeUnit.MINUTES;
+    public static final Long DISH_TTL = 12L;
+    public static final TimeUnit DISH_TTL_Unit = TimeUnit.HOURS;
+    public static final String DISH_EVICT_CHANNEL = "channel:dish:evict";
 
     public final static String SETMEAL_CACHE_KEY = "setmealCache";
+    public static final String SETMEAL_EVICT_CHANNEL = "channel:setmeal:evict";
+    public static final Long SETMEAL_TTL = 12L;
+    public static final TimeUnit SETMEAL_TTL_Unit = TimeUnit.HOURS;
+    public static final String MENU_VERSION_KEY = "menu:version";
+
     public final static String ORDER_STATISTICS = "statistics:orders";
 
     public static final String USER_STATISTICS = "statistics:user";
     public static final String TURNOVER_STATISTICS = "statistics:turnover";
     public static final String TOP10_STATISTICS = "statistics:top10";
+
+    public static final String SHOPPING_CART_KEY = "cart:";
+    public static final String SHOPPING_CART_ITEM_KEY = "cart:item:";
+    public static final Long SHOPPING_CART_TTL = 7L;
+    public static final TimeUnit SHOPPING_CART_TTL_Unit = TimeUnit.DAYS;
+
+    public static final String ORDER_STATUS_COUNT_KEY = "order:status:count";
+    public static final Long ORDER_STATUS_COUNT_DAILY_TTL = 2L;
+    public static final TimeUnit ORDER_STATUS_COUNT_DAILY_TTL_Unit = TimeUnit.DAYS;
+
+    public static final String ORDER_PAY_TIMEOUT_KEY = "order:pay:timeout";
+
+    public static final String TASK_LOCK_KEY = "task:lock:";
+    public static final String TASK_NODES_KEY = "task:nodes";
+
+    public static final String WEBSOCKET_BROADCAST_CHANNEL = "channel:websocket:broadcast";
+    public static final String WEBSOCKET_SEQ_KEY = "websocket:seq";
+    public static final String WEBSOCKET_REPLAY_KEY = "websocket:replay";
+
+    public static final String ID_WORKER_KEY = "id:worker:";
+    public static final String ID_WORKER_LAST_KEY = "id:worker:last:";
+
+    public static final String EXPORT_JOB_KEY = "export:job:";
+    public static final String EXPORT_JOB_DEDUP_KEY = "export:job:dedup:";
+    public static final Long EXPORT_JOB_TTL = 1L;
+    public static final TimeUnit EXPORT_JOB_TTL_Unit = TimeUnit.DAYS;
 }
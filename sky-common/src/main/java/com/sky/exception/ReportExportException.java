@@ -0,0 +1,9 @@
+package com.sky.exception;
+
+public class ReportExportException extends BaseException {
+
+    public ReportExportException(String msg) {
+        super(msg);
+    }
+
+}
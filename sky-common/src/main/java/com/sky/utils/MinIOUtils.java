@@ -5,13 +5,20 @@ import com.sky.entity.FileInfo;
 import io.minio.*;
 import io.minio.http.Method;
 import io.minio.messages.Bucket;
+import io.minio.messages.Expiration;
 import io.minio.messages.Item;
+import io.minio.messages.LifecycleConfiguration;
+import io.minio.messages.LifecycleRule;
+import io.minio.messages.RuleFilter;
+import io.minio.messages.Status;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
 import java.io.InputStream;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -32,6 +39,16 @@ public class MinIOUtils {
         }
     }
 
+    /**
+     * 设置桶中文件的过期天数，到期后由MinIO自动删除
+     */
+    public void setExpiration(String bucket, int days) throws Exception {
+        LifecycleRule rule = new LifecycleRule(Status.ENABLED, null, new Expiration((ZonedDateTime) null, days, null),
+                new RuleFilter(""), "expire-" + days + "d", null, null, null);
+        minioClient.setBucketLifecycle(SetBucketLifecycleArgs.builder().bucket(bucket)
+                .config(new LifecycleConfiguration(Collections.singletonList(rule))).build());
+    }
+
     /**
      * 上传一个文件
      */
@@ -1,34 +1,241 @@
 package com.sky.utils;
 
+import com.sky.constant.RedisConstant;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * 全局唯一id生成器，id = 秒级时间戳(高32位) | 序列号(低32位)
+ * <p>
+ * 默认序列号为 Redis 中按天自增的计数。开启 sky.id-worker.snowflake-enabled 后改为本地生成：
+ * 启动时从 Redis 租用一个1~1023的机器号（id:worker:{n}，由独立线程定时续期），低32位为 机器号(10位) | 秒内序列号(22位)，
+ * 序列号通过 CAS 递增，不再访问 Redis。机器号从1开始，与 Redis 计数（每天远少于2^22）生成的id不会重复。
+ * 时钟回拨时沿用上次的秒数继续分配序列号，该秒的序列号用完后等待时钟追上；租约未能续期时退回 Redis 计数。
+ * <p>
+ * 持有者每次租用和续期时在 id:worker:last:{n} 中记录本次租约内可能用到的秒数上限（不含），
+ * 下一个租到该机器号的节点从该秒开始分配，节点之间的时钟偏差不会产生重复id。
+ * 租约到期时间按 System.nanoTime() 计算，不受本机时钟调整影响。
+ */
 @Component
+@Slf4j
 public class RedisIdWorker {
     private final static long BEGIN_TIMESTAMP = 1704067200L;
     private static final short COUNT_BITS = 32;
 
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy:MM:dd");
+
+    private static final int SEQUENCE_BITS = 22;
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+    private static final int MAX_WORKER_ID = 1023;
+
+    //时钟回拨超过该秒数时不再等待，直接报错
+    private static final long MAX_BACKWARD_SECONDS = 5;
+
+    private static final long LEASE_MILLIS = 30_000;
+    private static final long RENEW_INTERVAL_MILLIS = 10_000;
+
+    //机器号最近使用秒数的保存时间，远大于节点间可能的时钟偏差
+    private static final long LAST_SECOND_TTL_SECONDS = TimeUnit.DAYS.toSeconds(1);
+
+    /**
+     * 租用机器号：成功时返回上一个持有者记录的秒数上限（没有记录时为0）并记录本次租约的秒数上限，失败返回-1
+     */
+    private static final RedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>(
+            "if not redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then return -1 end " +
+                    "local last = tonumber(redis.call('GET', KEYS[2]) or '0') " +
+                    "redis.call('SET', KEYS[2], math.max(last, tonumber(ARGV[3])) + tonumber(ARGV[4]), 'EX', ARGV[5]) " +
+                    "return last", Long.class);
+
+    /**
+     * 续期机器号租约：仍由自己持有时延长过期时间，并把秒数上限推进到 ARGV[3]
+     */
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) ~= ARGV[1] then return 0 end " +
+                    "redis.call('PEXPIRE', KEYS[1], ARGV[2]) " +
+                    "local last = tonumber(redis.call('GET', KEYS[2]) or '0') " +
+                    "redis.call('SET', KEYS[2], math.max(last, tonumber(ARGV[3])), 'EX', ARGV[4]) " +
+                    "return 1", Long.class);
+
+    private final String nodeId = UUID.randomUUID().toString();
+
     private StringRedisTemplate stringRedisTemplate;
 
+    @Value("${sky.id-worker.snowflake-enabled:false}")
+    private boolean snowflakeEnabled;
+
+    //租用的机器号，0表示没有租到
+    private volatile long workerId;
+
+    //租约到期时的 System.nanoTime()，超过后不再本地生成
+    private volatile long leaseDeadline;
+
+    //上次分配的 秒数 << 22 | 序列号
+    private final AtomicLong lastState = new AtomicLong();
+
+    private ScheduledExecutorService renewExecutor;
+
     public RedisIdWorker(StringRedisTemplate stringRedisTemplate) {
         this.stringRedisTemplate = stringRedisTemplate;
     }
 
+    @PostConstruct
+    public void init() {
+        if (!snowflakeEnabled) {
+            return;
+        }
+        renewLease();
+        renewExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "id-worker-lease");
+            thread.setDaemon(true);
+            return thread;
+        });
+        renewExecutor.scheduleAtFixedRate(this::renewLease, RENEW_INTERVAL_MILLIS, RENEW_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (renewExecutor != null) {
+            renewExecutor.shutdownNow();
+        }
+    }
+
     public long nextId(String keyPrefix) {
+        long worker = workerId;
+        if (worker > 0 && System.nanoTime() - leaseDeadline < 0) {
+            return nextLocalId(worker);
+        }
+        return nextRedisId(keyPrefix);
+    }
+
+    private long nextRedisId(String keyPrefix) {
         // 生成时间戳
         LocalDateTime now = LocalDateTime.now();
         long nowSecond = now.toEpochSecond(ZoneOffset.UTC);
         long timestamp = nowSecond - BEGIN_TIMESTAMP;
 
         // 生成序列号
-        String date = now.format(DateTimeFormatter.ofPattern("yyyy:MM:dd"));
+        String date = now.format(DATE_FORMATTER);
         Long count = stringRedisTemplate.opsForValue().increment("icr:" + keyPrefix + ":" + date);
-        assert count != null;
+        if (count == null) {
+            throw new IllegalStateException("生成id失败：" + keyPrefix);
+        }
         return timestamp << COUNT_BITS | count;
     }
 
+    private long nextLocalId(long worker) {
+        while (true) {
+            long state = lastState.get();
+            long lastTimestamp = state >>> SEQUENCE_BITS;
+            long sequence = state & MAX_SEQUENCE;
+            long timestamp = currentTimestamp();
+
+            long next;
+            if (timestamp > lastTimestamp) {
+                next = timestamp << SEQUENCE_BITS;
+            } else if (sequence < MAX_SEQUENCE) {
+                // 同一秒内或时钟回拨，沿用上次的秒数
+                next = state + 1;
+            } else {
+                // 该秒的序列号已用完，等待时钟进入下一秒
+                if (lastTimestamp - timestamp > MAX_BACKWARD_SECONDS) {
+                    throw new IllegalStateException("时钟回拨" + (lastTimestamp - timestamp) + "秒，无法生成id");
+                }
+                sleepUntilNextSecond();
+                continue;
+            }
+
+            if (lastState.compareAndSet(state, next)) {
+                long nextTimestamp = next >>> SEQUENCE_BITS;
+                return nextTimestamp << COUNT_BITS | worker << SEQUENCE_BITS | (next & MAX_SEQUENCE);
+            }
+        }
+    }
+
+    // 与 Redis 计数生成的id使用相同的时间基准
+    private long currentTimestamp() {
+        return LocalDateTime.now().toEpochSecond(ZoneOffset.UTC) - BEGIN_TIMESTAMP;
+    }
+
+    private void sleepUntilNextSecond() {
+        try {
+            TimeUnit.MILLISECONDS.sleep(1000 - System.currentTimeMillis() % 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("生成id被中断", e);
+        }
+    }
+
+    /**
+     * 续期机器号租约，续期失败时重新租用
+     */
+    private void renewLease() {
+        long start = System.nanoTime();
+        try {
+            long current = workerId;
+            if (current > 0) {
+                // 本次续期后的秒数上限：已分配的秒数与当前秒数中较大者加上租约时长
+                long maxSecond = Math.max(lastState.get() >>> SEQUENCE_BITS, currentTimestamp()) + leaseSeconds();
+                Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT, workerKeys(current),
+                        nodeId, String.valueOf(LEASE_MILLIS), String.valueOf(maxSecond), String.valueOf(LAST_SECOND_TTL_SECONDS));
+                if (renewed != null && renewed == 1) {
+                    leaseDeadline = start + TimeUnit.MILLISECONDS.toNanos(LEASE_MILLIS);
+                    return;
+                }
+                log.warn("机器号{}租约已失效，重新租用", current);
+                workerId = 0;
+            }
+            acquireLease(start);
+        } catch (Exception e) {
+            log.error("机器号租约续期失败", e);
+        }
+    }
+
+    private void acquireLease(long start) {
+        // 从随机位置开始尝试，减少多个节点同时启动时的争抢
+        int offset = ThreadLocalRandom.current().nextInt(MAX_WORKER_ID);
+        long fromSecond = Math.max(lastState.get() >>> SEQUENCE_BITS, currentTimestamp());
+        for (int i = 0; i < MAX_WORKER_ID; i++) {
+            long candidate = (offset + i) % MAX_WORKER_ID + 1;
+            Long last = stringRedisTemplate.execute(ACQUIRE_SCRIPT, workerKeys(candidate), nodeId,
+                    String.valueOf(LEASE_MILLIS), String.valueOf(fromSecond), String.valueOf(leaseSeconds()),
+                    String.valueOf(LAST_SECOND_TTL_SECONDS));
+            if (last != null && last >= 0) {
+                // 上一个持有者只会用到记录的秒数之前的秒数，从该秒开始分配
+                lastState.accumulateAndGet(last << SEQUENCE_BITS, Math::max);
+                leaseDeadline = start + TimeUnit.MILLISECONDS.toNanos(LEASE_MILLIS);
+                workerId = candidate;
+                log.info("租用机器号：{}", candidate);
+                return;
+            }
+        }
+        log.warn("没有可用的机器号，使用 Redis 计数生成id");
+    }
+
+    // 租约内可能用到的秒数，多留1秒
+    private long leaseSeconds() {
+        return TimeUnit.MILLISECONDS.toSeconds(LEASE_MILLIS) + 1;
+    }
+
+    private List<String> workerKeys(long workerId) {
+        return Arrays.asList(RedisConstant.ID_WORKER_KEY + workerId, RedisConstant.ID_WORKER_LAST_KEY + workerId);
+    }
 }
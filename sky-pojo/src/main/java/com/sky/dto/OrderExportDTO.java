@@ -0,0 +1,58 @@
+package com.sky.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 导出订单明细的一行：订单信息和其中一个商品
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class OrderExportDTO implements Serializable {
+    //订单id
+    private Long id;
+
+    //订单号
+    private String number;
+
+    //下单时间
+    private LocalDateTime orderTime;
+
+    //订单状态
+    private Integer status;
+
+    //订单金额
+    private BigDecimal amount;
+
+    //收货人
+    private String consignee;
+
+    //手机号
+    private String phone;
+
+    //地址
+    private String address;
+
+    //备注
+    private String remark;
+
+    //商品名称
+    private String detailName;
+
+    //口味
+    private String dishFlavor;
+
+    //商品数量
+    private Integer detailNumber;
+
+    //商品金额
+    private BigDecimal detailAmount;
+}
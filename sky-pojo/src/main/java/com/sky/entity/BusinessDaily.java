@@ -0,0 +1,40 @@
+package com.sky.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 营业数据日汇总
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BusinessDaily implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    //日期，订单按下单日期、用户按注册日期汇总
+    private LocalDate date;
+
+    //营业额：已完成订单的总金额
+    private BigDecimal turnover;
+
+    //订单总数
+    private Integer orderCount;
+
+    //有效订单数：已完成订单的数量
+    private Integer validOrderCount;
+
+    //新增用户数
+    private Integer newUsers;
+
+    private LocalDateTime updateTime;
+}
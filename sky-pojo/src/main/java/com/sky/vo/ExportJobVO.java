@@ -0,0 +1,52 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 营业数据导出任务
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExportJobVO implements Serializable {
+
+    /**
+     * 任务状态 1排队中 2导出中 3已完成 4失败
+     */
+    public static final Integer PENDING = 1;
+    public static final Integer RUNNING = 2;
+    public static final Integer SUCCESS = 3;
+    public static final Integer FAILED = 4;
+
+    private String id;
+
+    //任务状态
+    private Integer status;
+
+    //开始日期
+    private LocalDate begin;
+
+    //结束日期
+    private LocalDate end;
+
+    //是否附带订单明细
+    private Boolean detail;
+
+    //导出文件名
+    private String fileName;
+
+    //失败原因
+    private String errorMessage;
+
+    private LocalDateTime createTime;
+
+    private LocalDateTime finishTime;
+}
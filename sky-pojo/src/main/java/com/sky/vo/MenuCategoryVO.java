@@ -0,0 +1,37 @@
+package com.sky.vo;
+
+import com.sky.entity.Setmeal;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 整体菜单中的分类及其菜品/套餐
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MenuCategoryVO implements Serializable {
+
+    private Long id;
+
+    //类型: 1菜品分类 2套餐分类
+    private Integer type;
+
+    //分类名称
+    private String name;
+
+    //顺序
+    private Integer sort;
+
+    //起售中的菜品及口味，菜品分类时有值
+    private List<DishVO> dishes;
+
+    //起售中的套餐，套餐分类时有值
+    private List<Setmeal> setmeals;
+}
@@ -0,0 +1,25 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 用户端整体菜单快照
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MenuVO implements Serializable {
+
+    //菜单版本号，分类、菜品、套餐变更后递增
+    private Long version;
+
+    //启用的分类，按排序字段升序
+    private List<MenuCategoryVO> categories;
+}
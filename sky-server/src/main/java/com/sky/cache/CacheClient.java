@@ -0,0 +1,266 @@
+package com.sky.cache;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 防击穿的 Redis 列表缓存
+ * <p>
+ * 缓存值为 {"expireTime": 逻辑过期时间, "data": [...]}，Redis 物理过期时间为逻辑过期时间的两倍：
+ * <ul>
+ *     <li>逻辑过期后继续返回旧数据，由抢到互斥锁的节点异步重建，请求不会阻塞；
+ *     重建期间缓存被删除或更新时放弃写入，避免旧数据覆盖清除操作；</li>
+ *     <li>缓存不存在（被删除或物理过期）时，同一进程内同一个 key 只有一个线程去加载，
+ *     多个节点之间通过 Redis 互斥锁保证只有一个节点查询数据库，其余节点等待后读取缓存。</li>
+ * </ul>
+ * 清除缓存时写入一次性的清除标记而不是直接删除，加载前记下当前值，写入时值已变化（期间发生过清除）则放弃写入，
+ * 避免提交前读到的旧数据在清除之后写回缓存。
+ */
+@Component
+@Slf4j
+public class CacheClient {
+
+    private static final String LOCK_KEY_PREFIX = "lock:";
+    private static final long LOCK_TTL_SECONDS = 10;
+    private static final long LOCK_RETRY_MILLIS = 50;
+    private static final int LOCK_RETRY_TIMES = 20;
+
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0", Long.class);
+
+    /**
+     * 缓存值仍为加载开始时读到的值（空字符串表示不存在）才写入，期间被清除或更新时放弃写入
+     */
+    private static final RedisScript<Long> REPLACE_SCRIPT = new DefaultRedisScript<>(
+            "if (redis.call('GET', KEYS[1]) or '') ~= ARGV[1] then return 0 end " +
+                    "redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3]) return 1", Long.class);
+
+    //清除标记的保存时间，远大于一次加载的耗时
+    private static final long EVICT_MARK_TTL_SECONDS = 600;
+
+    private static final int REBUILD_THREADS = 4;
+    private static final int REBUILD_QUEUE_CAPACITY = 64;
+
+    // 队列满时丢弃重建任务：互斥锁已保证同一个 key 只重建一次，丢弃后继续返回旧数据，下次读取时再重建
+    private final ThreadPoolExecutor rebuildExecutor = new ThreadPoolExecutor(REBUILD_THREADS, REBUILD_THREADS,
+            0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(REBUILD_QUEUE_CAPACITY));
+
+    private final Map<String, CompletableFuture<List<?>>> loading = new ConcurrentHashMap<>();
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 查询列表缓存
+     *
+     * @param key    缓存key
+     * @param type   元素类型
+     * @param loader 数据库加载方法
+     * @param ttl    逻辑过期时间
+     * @param unit
+     * @return
+     */
+    public <T> List<T> getList(String key, Class<T> type, Supplier<List<T>> loader, long ttl, TimeUnit unit) {
+        JSONObject cached = read(key);
+        if (cached != null) {
+            if (cached.getLong("expireTime") <= System.currentTimeMillis()) {
+                // 逻辑过期：返回旧数据，异步重建
+                rebuildAsync(key, loader, ttl, unit);
+            }
+            return toList(cached, type);
+        }
+        return loadOnce(key, type, loader, ttl, unit);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> List<T> loadOnce(String key, Class<T> type, Supplier<List<T>> loader, long ttl, TimeUnit unit) {
+        CompletableFuture<List<?>> future = new CompletableFuture<>();
+        CompletableFuture<List<?>> existing = loading.putIfAbsent(key, future);
+        if (existing != null) {
+            // 同一进程内已有线程在加载，等待其结果
+            return (List<T>) existing.join();
+        }
+        try {
+            List<T> list = loadWithMutex(key, type, loader, ttl, unit);
+            future.complete(list);
+            return list;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    private <T> List<T> loadWithMutex(String key, Class<T> type, Supplier<List<T>> loader, long ttl, TimeUnit unit) {
+        String lockKey = LOCK_KEY_PREFIX + key;
+        for (int i = 0; i < LOCK_RETRY_TIMES; i++) {
+            String token = tryLock(lockKey);
+            if (token != null) {
+                try {
+                    // 获取锁后再次检查，其他节点可能已经重建完成
+                    String expected = stringRedisTemplate.opsForValue().get(key);
+                    JSONObject cached = parse(key, expected);
+                    if (cached != null) {
+                        return toList(cached, type);
+                    }
+                    List<T> list = loader.get();
+                    replace(key, expected, list, ttl, unit);
+                    return list;
+                } finally {
+                    unlock(lockKey, token);
+                }
+            }
+
+            // 其他节点正在重建，稍后读取缓存
+            sleep();
+            JSONObject cached = read(key);
+            if (cached != null) {
+                return toList(cached, type);
+            }
+        }
+        log.warn("cache rebuild lock wait timeout, load directly: {}", key);
+        return loader.get();
+    }
+
+    private <T> void rebuildAsync(String key, Supplier<List<T>> loader, long ttl, TimeUnit unit) {
+        String lockKey = LOCK_KEY_PREFIX + key;
+        String token = tryLock(lockKey);
+        if (token == null) {
+            return;
+        }
+        try {
+            rebuildExecutor.execute(() -> {
+                try {
+                    String expected = stringRedisTemplate.opsForValue().get(key);
+                    // 已被删除，由下次读取时重新加载
+                    if (expected == null) {
+                        return;
+                    }
+                    replace(key, expected, loader.get(), ttl, unit);
+                } catch (Exception e) {
+                    log.error("cache rebuild error: {}", key, e);
+                } finally {
+                    unlock(lockKey, token);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("cache rebuild queue full, skip: {}", key);
+            unlock(lockKey, token);
+        }
+    }
+
+    /**
+     * 清除缓存：写入清除标记，正在加载的旧数据不会再写入
+     *
+     * @param keys
+     */
+    public void evict(Collection<String> keys) {
+        for (String key : keys) {
+            String mark = new JSONObject().set("evicted", IdUtil.fastSimpleUUID()).toString();
+            stringRedisTemplate.opsForValue().set(key, mark, EVICT_MARK_TTL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    private JSONObject read(String key) {
+        return parse(key, stringRedisTemplate.opsForValue().get(key));
+    }
+
+    // 清除标记和旧格式的值视为未命中
+    private JSONObject parse(String key, String json) {
+        if (StrUtil.isBlank(json)) {
+            return null;
+        }
+        try {
+            JSONObject cached = JSONUtil.parseObj(json);
+            return cached.containsKey("expireTime") ? cached : null;
+        } catch (Exception e) {
+            // 旧格式的缓存，视为未命中
+            log.warn("invalid cache value, rebuild: {}", key);
+            return null;
+        }
+    }
+
+    private void replace(String key, String expected, List<?> list, long ttl, TimeUnit unit) {
+        stringRedisTemplate.execute(REPLACE_SCRIPT, Collections.singletonList(key), expected == null ? "" : expected,
+                toJson(list, ttl, unit), String.valueOf(unit.toMillis(ttl) * 2));
+    }
+
+    private String toJson(List<?> list, long ttl, TimeUnit unit) {
+        JSONObject cached = new JSONObject();
+        cached.set("expireTime", System.currentTimeMillis() + unit.toMillis(ttl));
+        cached.set("data", JSONUtil.parseArray(JSONUtil.toJsonStr(list)));
+        return cached.toString();
+    }
+
+    private <T> List<T> toList(JSONObject cached, Class<T> type) {
+        JSONArray data = cached.getJSONArray("data");
+        return data == null ? Collections.emptyList() : data.toList(type);
+    }
+
+    private String tryLock(String lockKey) {
+        String token = IdUtil.fastSimpleUUID();
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(lockKey, token, LOCK_TTL_SECONDS, TimeUnit.SECONDS);
+        return Boolean.TRUE.equals(locked) ? token : null;
+    }
+
+    private void unlock(String lockKey, String token) {
+        stringRedisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(lockKey), token);
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(LOCK_RETRY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 在事务中调用时推迟到事务提交后执行，否则立即执行。
+     * 用于清除缓存，避免其他请求在提交前把旧数据重新写入缓存。
+     *
+     * @param action
+     */
+    public static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+            return;
+        }
+        action.run();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        rebuildExecutor.shutdown();
+    }
+}
@@ -0,0 +1,106 @@
+package com.sky.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.constant.RedisConstant;
+import com.sky.vo.DishVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 菜品二级缓存
+ * <p>
+ * 一级缓存为进程内的 Caffeine，直接保存反序列化后的菜品列表；二级缓存为 Redis 中的 dish:{categoryId}，
+ * 由 {@link CacheClient} 负责逻辑过期和重建时的互斥。
+ * 菜品变更时删除 Redis 缓存，通过 Redis 发布订阅通知所有节点清除本地缓存，并递增菜单版本号。
+ */
+@Component
+@Slf4j
+public class DishCache {
+
+    private static final long LOCAL_MAXIMUM_SIZE = 512;
+    private static final long LOCAL_TTL_MINUTES = 10;
+
+    private final Cache<Long, List<DishVO>> localCache = Caffeine.newBuilder()
+            .maximumSize(LOCAL_MAXIMUM_SIZE)
+            .expireAfterWrite(LOCAL_TTL_MINUTES, TimeUnit.MINUTES)
+            .build();
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private MenuVersion menuVersion;
+
+    /**
+     * 根据分类id查询菜品列表，依次查询本地缓存、Redis，都未命中时调用 loader 从数据库加载。
+     * 返回的列表在多个请求间共享，调用方不能修改。
+     *
+     * @param categoryId
+     * @param loader     数据库加载方法
+     * @return
+     */
+    public List<DishVO> get(Long categoryId, Function<Long, List<DishVO>> loader) {
+        return localCache.get(categoryId, id -> cacheClient.getList(RedisConstant.DISH_KEY + id, DishVO.class,
+                () -> loader.apply(id), RedisConstant.DISH_TTL, RedisConstant.DISH_TTL_Unit));
+    }
+
+    /**
+     * 跳过本地缓存，直接从 Redis 查询菜品列表。
+     * 用于整体菜单快照，避免其他节点尚未处理清除通知时读到本地的旧数据。
+     *
+     * @param categoryId
+     * @param loader     数据库加载方法
+     * @return
+     */
+    public List<DishVO> getFromRedis(Long categoryId, Function<Long, List<DishVO>> loader) {
+        return cacheClient.getList(RedisConstant.DISH_KEY + categoryId, DishVO.class,
+                () -> loader.apply(categoryId), RedisConstant.DISH_TTL, RedisConstant.DISH_TTL_Unit);
+    }
+
+    /**
+     * 清除指定分类的菜品缓存，并通知其他节点。
+     * 在事务中调用时，推迟到事务提交后执行，避免其他请求在提交前把旧数据重新写入缓存。
+     *
+     * @param categoryIds
+     */
+    public void evict(Collection<Long> categoryIds) {
+        Set<Long> ids = categoryIds.stream().filter(Objects::nonNull).collect(Collectors.toSet());
+        if (ids.isEmpty()) {
+            return;
+        }
+        CacheClient.afterCommit(() -> {
+            cacheClient.evict(ids.stream().map(id -> RedisConstant.DISH_KEY + id).collect(Collectors.toList()));
+            localCache.invalidateAll(ids);
+            ids.forEach(id -> stringRedisTemplate.convertAndSend(RedisConstant.DISH_EVICT_CHANNEL, id.toString()));
+            menuVersion.increment();
+        });
+    }
+
+    /**
+     * 收到其他节点的清除通知，清除本地缓存
+     *
+     * @param message 分类id
+     */
+    public void onEvictMessage(String message) {
+        log.debug("dish cache evict: {}", message);
+        try {
+            localCache.invalidate(Long.valueOf(message));
+        } catch (NumberFormatException e) {
+            log.warn("invalid dish cache evict message: {}", message);
+        }
+    }
+}
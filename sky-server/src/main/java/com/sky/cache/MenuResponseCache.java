@@ -0,0 +1,117 @@
+package com.sky.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.json.JacksonObjectMapper;
+import com.sky.result.Result;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 用户端菜单响应缓存
+ * <p>
+ * 按分类缓存 /user/dish/list、/user/setmeal/list 完整的 Result JSON 字节及其 ETag（整体菜单按版本号缓存），
+ * 命中时直接作为响应体返回，客户端携带相同的 If-None-Match 时返回 304。
+ * 菜品、套餐变更时通过 Redis 发布订阅通知所有节点清除。
+ */
+@Component
+@Slf4j
+public class MenuResponseCache {
+
+    public static final String DISH = "dish:";
+    public static final String SETMEAL = "setmeal:";
+    public static final String MENU = "menu:";
+
+    private static final long MAXIMUM_SIZE = 1024;
+    private static final long TTL_MINUTES = 5;
+    private static final MediaType JSON_UTF8 = new MediaType(MediaType.APPLICATION_JSON, StandardCharsets.UTF_8);
+
+    private final ObjectMapper objectMapper = new JacksonObjectMapper();
+
+    private final Cache<String, Rendered> cache = Caffeine.newBuilder()
+            .maximumSize(MAXIMUM_SIZE)
+            .expireAfterWrite(TTL_MINUTES, TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * 是否缓存序列化后的响应，关闭时每次请求重新序列化
+     */
+    @Value("${sky.menu.rendered-cache-enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 生成菜单数据的响应，响应体为序列化后的 Result JSON
+     *
+     * @param key         缓存key，DISH/SETMEAL + 分类id，MENU + 版本号
+     * @param loader      缓存未命中时加载响应数据
+     * @param ifNoneMatch 请求头 If-None-Match
+     * @return
+     */
+    public ResponseEntity<byte[]> respond(String key, Supplier<Result<?>> loader, String ifNoneMatch) {
+        Rendered rendered = enabled ? cache.get(key, k -> render(loader.get())) : render(loader.get());
+
+        if (rendered.etag.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(rendered.etag)
+                    .cacheControl(CacheControl.noCache())
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(rendered.etag)
+                .cacheControl(CacheControl.noCache())
+                .contentType(JSON_UTF8)
+                .body(rendered.body);
+    }
+
+    /**
+     * 收到菜品缓存清除通知
+     *
+     * @param message 分类id
+     */
+    public void onDishEvictMessage(String message) {
+        evictLocal(DISH, message);
+    }
+
+    /**
+     * 收到套餐缓存清除通知
+     *
+     * @param message 分类id
+     */
+    public void onSetmealEvictMessage(String message) {
+        evictLocal(SETMEAL, message);
+    }
+
+    private void evictLocal(String prefix, String message) {
+        log.debug("menu response cache evict: {}{}", prefix, message);
+        cache.invalidate(prefix + message);
+    }
+
+    private Rendered render(Result<?> result) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(result);
+            return new Rendered(body, "\"" + DigestUtils.md5DigestAsHex(body) + "\"");
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @AllArgsConstructor
+    private static class Rendered {
+        private final byte[] body;
+        private final String etag;
+    }
+}
@@ -0,0 +1,36 @@
+package com.sky.cache;
+
+import com.sky.constant.RedisConstant;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+/**
+ * 菜单版本号
+ * <p>
+ * 保存在 Redis 中，分类、菜品、套餐每次变更后递增，用户端整体菜单快照按版本号缓存。
+ */
+@Component
+public class MenuVersion {
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 查询当前菜单版本号
+     *
+     * @return
+     */
+    public long current() {
+        String version = stringRedisTemplate.opsForValue().get(RedisConstant.MENU_VERSION_KEY);
+        return version == null ? 0 : Long.parseLong(version);
+    }
+
+    /**
+     * 菜单版本号加一
+     */
+    public void increment() {
+        stringRedisTemplate.opsForValue().increment(RedisConstant.MENU_VERSION_KEY);
+    }
+}
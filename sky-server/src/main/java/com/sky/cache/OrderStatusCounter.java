@@ -0,0 +1,198 @@
+package com.sky.cache;
+
+import com.sky.constant.RedisConstant;
+import com.sky.entity.Orders;
+import com.sky.event.OrderEvent;
+import com.sky.event.OrderEventListener;
+import com.sky.event.OrderEventType;
+import com.sky.mapper.OrderMapper;
+import com.sky.vo.OrderOverViewVO;
+import com.sky.vo.OrderStatisticsVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 订单状态计数器
+ * <p>
+ * Redis 中保存两组计数：order:status:count 为全部订单各状态的数量，order:status:count:{date} 为当天下单的订单各状态的数量
+ * （另有 all 字段保存当天订单总数）。收到订单事件后增减计数，定时任务按订单表重新统计校正。
+ */
+@Component
+@Slf4j
+public class OrderStatusCounter implements OrderEventListener {
+
+    private static final String ALL = "all";
+
+    @Value("${sky.order.status-counter-enabled:true}")
+    private boolean enabled;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private OrderMapper orderMapper;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void onOrderEvent(OrderEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (event.getType() == OrderEventType.SUBMIT) {
+            onSubmitted(event.getOrders());
+        } else if (event.getNewStatus() != null) {
+            onTransition(event.getOrdersList(), event.getNewStatus());
+        }
+    }
+
+    /**
+     * 新订单计入待付款和当天订单总数
+     *
+     * @param orders 新插入的订单
+     */
+    private void onSubmitted(Orders orders) {
+        String status = orders.getStatus().toString();
+        String dailyKey = getDailyKey(orders.getOrderTime().toLocalDate());
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.hIncrBy(RedisConstant.ORDER_STATUS_COUNT_KEY, status, 1);
+            conn.hIncrBy(dailyKey, status, 1);
+            conn.hIncrBy(dailyKey, ALL, 1);
+            conn.expire(dailyKey, RedisConstant.ORDER_STATUS_COUNT_DAILY_TTL_Unit.toSeconds(RedisConstant.ORDER_STATUS_COUNT_DAILY_TTL));
+            return null;
+        });
+    }
+
+    /**
+     * 订单状态变化后把计数从原状态移到新状态
+     *
+     * @param ordersList 变化前的订单，需要包含状态和下单时间
+     * @param newStatus  新状态
+     */
+    private void onTransition(List<Orders> ordersList, Integer newStatus) {
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (Orders orders : ordersList) {
+                if (orders.getStatus() == null || orders.getStatus().equals(newStatus)) {
+                    continue;
+                }
+                String oldField = orders.getStatus().toString();
+                String newField = newStatus.toString();
+                conn.hIncrBy(RedisConstant.ORDER_STATUS_COUNT_KEY, oldField, -1);
+                conn.hIncrBy(RedisConstant.ORDER_STATUS_COUNT_KEY, newField, 1);
+                // 当天的计数只在下单当天有效，过期的订单不再处理
+                if (orders.getOrderTime() != null && orders.getOrderTime().toLocalDate().equals(LocalDate.now())) {
+                    String dailyKey = getDailyKey(LocalDate.now());
+                    conn.hIncrBy(dailyKey, oldField, -1);
+                    conn.hIncrBy(dailyKey, newField, 1);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 待接单、待派送、派送中的订单数量
+     */
+    public OrderStatisticsVO getStatistics() {
+        Map<Object, Object> counts = stringRedisTemplate.opsForHash().entries(RedisConstant.ORDER_STATUS_COUNT_KEY);
+        if (counts.isEmpty()) {
+            counts = new HashMap<>(reconcileTotal());
+        }
+        OrderStatisticsVO orderStatisticsVO = new OrderStatisticsVO();
+        orderStatisticsVO.setToBeConfirmed(getCount(counts, Orders.TO_BE_CONFIRMED.toString()));
+        orderStatisticsVO.setConfirmed(getCount(counts, Orders.CONFIRMED.toString()));
+        orderStatisticsVO.setDeliveryInProgress(getCount(counts, Orders.DELIVERY_IN_PROGRESS.toString()));
+        return orderStatisticsVO;
+    }
+
+    /**
+     * 当天下单的订单各状态数量
+     */
+    public OrderOverViewVO getTodayOverView() {
+        LocalDate today = LocalDate.now();
+        Map<Object, Object> counts = stringRedisTemplate.opsForHash().entries(getDailyKey(today));
+        if (counts.isEmpty()) {
+            counts = new HashMap<>(reconcileDaily(today));
+        }
+        return OrderOverViewVO.builder()
+                .waitingOrders(getCount(counts, Orders.TO_BE_CONFIRMED.toString()))
+                .deliveredOrders(getCount(counts, Orders.CONFIRMED.toString()))
+                .completedOrders(getCount(counts, Orders.COMPLETED.toString()))
+                .cancelledOrders(getCount(counts, Orders.CANCELLED.toString()))
+                .allOrders(getCount(counts, ALL))
+                .build();
+    }
+
+    /**
+     * 按订单表重新统计全部和当天的计数，覆盖增量维护中因并发或异常产生的偏差
+     */
+    public void reconcile() {
+        if (!enabled) {
+            return;
+        }
+        reconcileTotal();
+        reconcileDaily(LocalDate.now());
+    }
+
+    private Map<String, String> reconcileTotal() {
+        Map<String, String> counts = countGroupByStatus(null);
+        counts.remove(ALL);
+        stringRedisTemplate.opsForHash().putAll(RedisConstant.ORDER_STATUS_COUNT_KEY, counts);
+        return counts;
+    }
+
+    private Map<String, String> reconcileDaily(LocalDate date) {
+        Map<String, String> counts = countGroupByStatus(LocalDateTime.of(date, LocalTime.MIN));
+        String dailyKey = getDailyKey(date);
+        stringRedisTemplate.opsForHash().putAll(dailyKey, counts);
+        stringRedisTemplate.expire(dailyKey, RedisConstant.ORDER_STATUS_COUNT_DAILY_TTL, RedisConstant.ORDER_STATUS_COUNT_DAILY_TTL_Unit);
+        return counts;
+    }
+
+    /**
+     * 按状态分组统计订单数量，没有订单的状态计为0
+     *
+     * @param begin 下单时间下限，为null时统计全部订单
+     * @return 状态 -> 数量，all -> 总数
+     */
+    private Map<String, String> countGroupByStatus(LocalDateTime begin) {
+        Map<String, String> counts = new HashMap<>();
+        for (int status = Orders.PENDING_PAYMENT; status <= Orders.CANCELLED; status++) {
+            counts.put(String.valueOf(status), "0");
+        }
+        long all = 0;
+        for (Map<String, Object> row : orderMapper.countGroupByStatus(begin)) {
+            long count = ((Number) row.get("count")).longValue();
+            counts.put(row.get("status").toString(), String.valueOf(count));
+            all += count;
+        }
+        counts.put(ALL, String.valueOf(all));
+        return counts;
+    }
+
+    private Integer getCount(Map<Object, Object> counts, String field) {
+        Object count = counts.get(field);
+        // 计数在校正前可能短暂为负，按0处理
+        return count == null ? 0 : Math.max(0, Integer.parseInt(count.toString()));
+    }
+
+    private String getDailyKey(LocalDate date) {
+        return RedisConstant.ORDER_STATUS_COUNT_KEY + ":" + date;
+    }
+}
@@ -0,0 +1,66 @@
+package com.sky.cache;
+
+import com.sky.constant.RedisConstant;
+import com.sky.entity.Setmeal;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 套餐缓存
+ * <p>
+ * 按分类缓存起售中的套餐，key 沿用 Spring Cache 的 setmealCache::{categoryId}。
+ * 套餐变更时删除 Redis 缓存，通过 Redis 发布订阅通知所有节点清除响应缓存，并递增菜单版本号。
+ */
+@Component
+public class SetmealCache {
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private MenuVersion menuVersion;
+
+    /**
+     * 根据分类id查询套餐列表
+     *
+     * @param categoryId
+     * @param loader     数据库加载方法
+     * @return
+     */
+    public List<Setmeal> get(Long categoryId, Supplier<List<Setmeal>> loader) {
+        return cacheClient.getList(key(categoryId), Setmeal.class, loader,
+                RedisConstant.SETMEAL_TTL, RedisConstant.SETMEAL_TTL_Unit);
+    }
+
+    /**
+     * 清除指定分类的套餐缓存，并通知其他节点，在事务中调用时推迟到事务提交后执行
+     *
+     * @param categoryIds
+     */
+    public void evict(Collection<Long> categoryIds) {
+        Set<Long> ids = categoryIds.stream().filter(Objects::nonNull).collect(Collectors.toSet());
+        if (ids.isEmpty()) {
+            return;
+        }
+        CacheClient.afterCommit(() -> {
+            cacheClient.evict(ids.stream().map(this::key).collect(Collectors.toList()));
+            ids.forEach(id -> stringRedisTemplate.convertAndSend(RedisConstant.SETMEAL_EVICT_CHANNEL, id.toString()));
+            menuVersion.increment();
+        });
+    }
+
+    private String key(Long categoryId) {
+        return RedisConstant.SETMEAL_CACHE_KEY + "::" + categoryId;
+    }
+}
@@ -0,0 +1,157 @@
+package com.sky.cache;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.sky.constant.RedisConstant;
+import com.sky.entity.ShoppingCart;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于Redis Hash的购物车存储
+ * <p>
+ * 每个用户对应两个Hash：cart:{userId} 保存商品数量，cart:item:{userId} 保存商品的名称、图片、价格等信息，
+ * field 为菜品/套餐/口味组成的商品标识。数量的增减通过 HINCRBY 原子完成，无需加锁。
+ */
+@Component
+public class ShoppingCartCache {
+
+    /**
+     * 数量增加并刷新两个Hash的过期时间，返回增加后的数量。
+     * 传入 ARGV[4] 时先写入商品信息（已存在不覆盖）；未传入且商品信息不存在时不增加，返回0
+     */
+    private static final RedisScript<Long> INCREMENT_SCRIPT = new DefaultRedisScript<>(
+            "if ARGV[4] then redis.call('HSETNX', KEYS[2], ARGV[1], ARGV[4]) " +
+                    "elseif redis.call('HEXISTS', KEYS[2], ARGV[1]) == 0 then return 0 end " +
+                    "local n = redis.call('HINCRBY', KEYS[1], ARGV[1], ARGV[2]) " +
+                    "redis.call('EXPIRE', KEYS[1], ARGV[3]) " +
+                    "redis.call('EXPIRE', KEYS[2], ARGV[3]) " +
+                    "return n", Long.class);
+
+    /**
+     * 数量减一并刷新过期时间，减到0时删除该商品，返回减少后的数量
+     */
+    private static final RedisScript<Long> DECREMENT_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('HEXISTS', KEYS[1], ARGV[1]) == 0 then return -1 end " +
+                    "local n = redis.call('HINCRBY', KEYS[1], ARGV[1], -1) " +
+                    "if n <= 0 then " +
+                    "redis.call('HDEL', KEYS[1], ARGV[1]) " +
+                    "redis.call('HDEL', KEYS[2], ARGV[1]) " +
+                    "else " +
+                    "redis.call('EXPIRE', KEYS[1], ARGV[2]) " +
+                    "redis.call('EXPIRE', KEYS[2], ARGV[2]) " +
+                    "end " +
+                    "return n", Long.class);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 购物车中已有该商品时数量增加
+     *
+     * @param userId
+     * @param field  商品标识
+     * @param delta  增加的数量
+     * @return 增加后的数量，购物车中没有该商品时返回0
+     */
+    public long increment(Long userId, String field, int delta) {
+        Long number = stringRedisTemplate.execute(INCREMENT_SCRIPT, keys(userId), field,
+                String.valueOf(delta), ttlSeconds());
+        return number == null ? 0 : number;
+    }
+
+    /**
+     * 保存商品信息（已存在时不覆盖）并增加数量，两者在同一脚本中完成
+     *
+     * @param userId
+     * @param field        商品标识
+     * @param delta        增加的数量
+     * @param shoppingCart 商品信息
+     * @return 增加后的数量
+     */
+    public long add(Long userId, String field, int delta, ShoppingCart shoppingCart) {
+        Long number = stringRedisTemplate.execute(INCREMENT_SCRIPT, keys(userId), field,
+                String.valueOf(delta), ttlSeconds(), JSONUtil.toJsonStr(shoppingCart));
+        return number == null ? 0 : number;
+    }
+
+    /**
+     * 商品数量减一，减到0时删除该商品
+     *
+     * @param userId
+     * @param field  商品标识
+     * @return 减少后的数量，商品不存在时返回-1
+     */
+    public long decrement(Long userId, String field) {
+        Long number = stringRedisTemplate.execute(DECREMENT_SCRIPT, keys(userId), field, ttlSeconds());
+        return number == null ? -1 : number;
+    }
+
+    /**
+     * 查询用户购物车中的所有商品
+     *
+     * @param userId
+     * @return
+     */
+    public List<ShoppingCart> list(Long userId) {
+        Map<Object, Object> numbers = stringRedisTemplate.opsForHash().entries(RedisConstant.SHOPPING_CART_KEY + userId);
+        if (numbers.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Object, Object> items = stringRedisTemplate.opsForHash().entries(RedisConstant.SHOPPING_CART_ITEM_KEY + userId);
+
+        List<ShoppingCart> list = new ArrayList<>(numbers.size());
+        numbers.forEach((field, number) -> {
+            String json = (String) items.get(field);
+            // 商品信息缺失，跳过
+            if (StrUtil.isBlank(json)) {
+                return;
+            }
+            ShoppingCart shoppingCart = JSONUtil.toBean(json, ShoppingCart.class);
+            shoppingCart.setUserId(userId);
+            shoppingCart.setNumber(Integer.valueOf((String) number));
+            list.add(shoppingCart);
+        });
+        return list;
+    }
+
+    /**
+     * 清空用户购物车
+     *
+     * @param userId
+     */
+    public void clean(Long userId) {
+        stringRedisTemplate.delete(keys(userId));
+    }
+
+    /**
+     * 生成商品标识，格式：dish:{dishId}:{dishFlavor} 或 setmeal:{setmealId}
+     *
+     * @param dishId
+     * @param setmealId
+     * @param dishFlavor
+     * @return
+     */
+    public static String field(Long dishId, Long setmealId, String dishFlavor) {
+        if (dishId != null) {
+            return "dish:" + dishId + ":" + StrUtil.nullToEmpty(dishFlavor);
+        }
+        return "setmeal:" + setmealId;
+    }
+
+    private String ttlSeconds() {
+        return String.valueOf(RedisConstant.SHOPPING_CART_TTL_Unit.toSeconds(RedisConstant.SHOPPING_CART_TTL));
+    }
+
+    private List<String> keys(Long userId) {
+        return Arrays.asList(RedisConstant.SHOPPING_CART_KEY + userId, RedisConstant.SHOPPING_CART_ITEM_KEY + userId);
+    }
+}
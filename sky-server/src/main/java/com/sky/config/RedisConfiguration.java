@@ -0,0 +1,45 @@
+package com.sky.config;
+
+import com.sky.cache.DishCache;
+import com.sky.cache.MenuResponseCache;
+import com.sky.constant.RedisConstant;
+import com.sky.websocket.WebSocketBroadcaster;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Redis配置类，注册发布订阅的监听容器
+ */
+@Configuration
+@Slf4j
+public class RedisConfiguration {
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                       DishCache dishCache,
+                                                                       MenuResponseCache menuResponseCache,
+                                                                       WebSocketBroadcaster webSocketBroadcaster) {
+        log.info("开始创建Redis消息监听容器...");
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        // 菜品缓存清除通知
+        container.addMessageListener((message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            dishCache.onEvictMessage(body);
+            menuResponseCache.onDishEvictMessage(body);
+        }, new ChannelTopic(RedisConstant.DISH_EVICT_CHANNEL));
+        // 套餐缓存清除通知
+        container.addMessageListener((message, pattern) -> menuResponseCache.onSetmealEvictMessage(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(RedisConstant.SETMEAL_EVICT_CHANNEL));
+        // WebSocket群发消息
+        container.addMessageListener((message, pattern) -> webSocketBroadcaster.onMessage(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(RedisConstant.WEBSOCKET_BROADCAST_CHANNEL));
+        return container;
+    }
+}
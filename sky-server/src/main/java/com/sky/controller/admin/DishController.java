@@ -1,7 +1,6 @@
 package com.sky.controller.admin;
 
 import cn.hutool.core.text.StrBuilder;
-import com.sky.constant.RedisConstant;
 import com.sky.dto.DishDTO;
 import com.sky.dto.DishPageQueryDTO;
 import com.sky.entity.Dish;
@@ -11,13 +10,11 @@ import com.sky.service.DishService;
 import com.sky.vo.DishVO;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 import java.util.stream.Collectors;
 
 @RestController
@@ -28,13 +25,9 @@ public class DishController {
     @Resource
     private DishService dishService;
 
-    @Resource
-    private StringRedisTemplate stringRedisTemplate;
-
     @PostMapping
     public Result<String> save(@RequestBody DishDTO dishDTO) {
         dishService.saveWithFlavor(dishDTO);
-        stringRedisTemplate.delete(RedisConstant.DISH_KEY + dishDTO);
         return Result.success();
     }
 
@@ -47,9 +40,6 @@ public class DishController {
     @DeleteMapping
     public Result<String> delete(@RequestParam List<Long> ids) {
         dishService.deleteBatch(ids);
-
-        deleteRedisAllDishKeys();
-
         return Result.success();
     }
 
@@ -62,29 +52,9 @@ public class DishController {
     @PutMapping
     public Result<String> update(@RequestBody DishDTO dishDTO) {
         dishService.updateWithFlavor(dishDTO);
-        deleteRedisAllDishKeys();
         return Result.success();
     }
 
-    /**
-     * 删除Redis中所有与菜品相关的键。
-     * <p>
-     * 本方法通过查询以DISH_KEY前缀开头的所有键，然后批量删除这些键。
-     * 这样做的目的是为了在系统需要清理缓存或重新加载菜品数据时，能够快速地清除与菜品相关的所有缓存数据。
-     * 使用Redis的keys方法和delete方法，可以有效地批量处理键，提高操作效率。
-     * <p>
-     * 注意：批量删除操作应谨慎使用，确保不会误删其他重要数据。
-     */
-    private void deleteRedisAllDishKeys() {
-        // 查询以DISH_KEY前缀开头的所有键
-        Set<String> keys = stringRedisTemplate.keys(RedisConstant.DISH_KEY + "*");
-        // 检查查询到的键是否为空，非空则删除
-        if (keys != null && !keys.isEmpty()) {
-            stringRedisTemplate.delete(keys);
-        }
-    }
-
-
     /**
      * 根据分类id查询菜品
      *
@@ -102,7 +72,6 @@ public class DishController {
     @PostMapping("/status/{status}")
     public Result<String> startOrStop(@PathVariable Integer status, Long id) {
         dishService.startOrStop(status, id);
-        deleteRedisAllDishKeys();
         return Result.success();
     }
 }
@@ -1,7 +1,9 @@
 package com.sky.controller.admin;
 
 import com.sky.result.Result;
+import com.sky.service.ExportJobService;
 import com.sky.service.ReportService;
+import com.sky.vo.ExportJobVO;
 import com.sky.vo.OrderReportVO;
 import com.sky.vo.SalesTop10ReportVO;
 import com.sky.vo.TurnoverReportVO;
@@ -9,6 +11,8 @@ import com.sky.vo.UserReportVO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -25,6 +29,9 @@ public class ReportController {
     @Resource
     private ReportService reportService;
 
+    @Resource
+    private ExportJobService exportJobService;
+
     @GetMapping("/turnoverStatistics")
     public Result<TurnoverReportVO> turnoverStatistics(@DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate begin,
                                                        @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate end) {
@@ -53,10 +60,46 @@ public class ReportController {
         return Result.success(salesTop10ReportVO);
     }
 
+    /**
+     * 导出营业数据，默认为最近30天
+     *
+     * @param begin  开始日期
+     * @param end    结束日期
+     * @param detail 是否附带订单明细
+     */
     @GetMapping("/export")
-    public void export(HttpServletResponse response) {
-        reportService.exportBusinessData(response);
+    public void export(@RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate begin,
+                       @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate end,
+                       @RequestParam(defaultValue = "false") boolean detail,
+                       HttpServletResponse response) {
+        if (begin == null || end == null) {
+            begin = LocalDate.now().minusDays(30);
+            end = LocalDate.now().minusDays(1);
+        }
+        reportService.exportBusinessData(begin, end, detail, response);
+    }
 
+    /**
+     * 提交异步导出任务，默认为最近30天，相同参数的任务未完成时返回已有任务
+     */
+    @PostMapping("/export/jobs")
+    public Result<ExportJobVO> submitExportJob(@RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate begin,
+                                               @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate end,
+                                               @RequestParam(defaultValue = "false") boolean detail) {
+        if (begin == null || end == null) {
+            begin = LocalDate.now().minusDays(30);
+            end = LocalDate.now().minusDays(1);
+        }
+        return Result.success(exportJobService.submit(begin, end, detail));
+    }
+
+    @GetMapping("/export/jobs/{id}")
+    public Result<ExportJobVO> getExportJob(@PathVariable String id) {
+        return Result.success(exportJobService.getById(id));
+    }
 
+    @GetMapping("/export/jobs/{id}/download")
+    public void downloadExportJob(@PathVariable String id, HttpServletResponse response) {
+        exportJobService.download(id, response);
     }
 }
@@ -1,12 +1,17 @@
 package com.sky.controller.user;
 
+import com.sky.cache.MenuResponseCache;
 import com.sky.result.Result;
 import com.sky.service.DishService;
 import com.sky.vo.DishVO;
 import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -21,12 +26,27 @@ public class DishController {
     @Resource
     private DishService dishService;
 
+    @Resource
+    private MenuResponseCache menuResponseCache;
+
 
+    /**
+     * 根据分类id查询菜品，响应体为缓存的 Result JSON，接口文档中的结构见 {@link DishListResult}
+     *
+     * @param categoryId
+     * @param ifNoneMatch
+     * @return
+     */
     @GetMapping("/list")
-    @ApiOperation("根据分类id查询菜品")
-    public Result<List<DishVO>> list(Long categoryId) {
-        List<DishVO> list = dishService.listWithFlavorByCategoryId(categoryId);
-        return Result.success(list);
+    @ApiOperation(value = "根据分类id查询菜品", response = DishListResult.class)
+    public ResponseEntity<byte[]> list(Long categoryId,
+                                       @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return menuResponseCache.respond(MenuResponseCache.DISH + categoryId,
+                () -> Result.success(dishService.listWithFlavorByCategoryId(categoryId)), ifNoneMatch);
+    }
+
+    @ApiModel("菜品列表结果")
+    static class DishListResult extends Result<List<DishVO>> {
     }
 
 }
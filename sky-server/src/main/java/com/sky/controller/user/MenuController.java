@@ -0,0 +1,53 @@
+package com.sky.controller.user;
+
+import com.sky.cache.MenuResponseCache;
+import com.sky.cache.MenuVersion;
+import com.sky.result.Result;
+import com.sky.service.MenuService;
+import com.sky.vo.MenuVO;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+
+@RestController("userMenuController")
+@RequestMapping("/user/menu")
+@Slf4j
+@Api(tags = "C端-整体菜单接口")
+public class MenuController {
+
+    @Resource
+    private MenuService menuService;
+
+    @Resource
+    private MenuVersion menuVersion;
+
+    @Resource
+    private MenuResponseCache menuResponseCache;
+
+    /**
+     * 查询整体菜单快照，包含分类、菜品及口味、套餐，按菜单版本号缓存并支持 ETag
+     *
+     * @param ifNoneMatch
+     * @return
+     */
+    @GetMapping
+    @ApiOperation(value = "查询整体菜单", response = MenuResult.class)
+    public ResponseEntity<byte[]> menu(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        long version = menuVersion.current();
+        return menuResponseCache.respond(MenuResponseCache.MENU + version,
+                () -> Result.success(menuService.getMenu(version)), ifNoneMatch);
+    }
+
+    @ApiModel("整体菜单结果")
+    static class MenuResult extends Result<MenuVO> {
+    }
+}
@@ -1,14 +1,19 @@
 package com.sky.controller.user;
 
+import com.sky.cache.MenuResponseCache;
 import com.sky.constant.StatusConstant;
 import com.sky.entity.Setmeal;
 import com.sky.result.Result;
 import com.sky.service.SetmealService;
 import com.sky.vo.DishItemVO;
 import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiOperation;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -22,17 +27,22 @@ public class SetmealController {
     @Resource
     private SetmealService setmealService;
 
+    @Resource
+    private MenuResponseCache menuResponseCache;
+
     /**
-     * 条件查询
+     * 条件查询，响应体为缓存的 Result JSON，接口文档中的结构见 {@link SetmealListResult}
      *
      * @param categoryId
+     * @param ifNoneMatch
      * @return
      */
     @GetMapping("/list")
-    @ApiOperation("根据分类id查询套餐")
-    public Result<List<Setmeal>> list(Long categoryId) {
-        List<Setmeal> list = setmealService.listById(categoryId);
-        return Result.success(list);
+    @ApiOperation(value = "根据分类id查询套餐", response = SetmealListResult.class)
+    public ResponseEntity<byte[]> list(Long categoryId,
+                                       @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return menuResponseCache.respond(MenuResponseCache.SETMEAL + categoryId,
+                () -> Result.success(setmealService.listById(categoryId)), ifNoneMatch);
     }
 
     /**
@@ -47,4 +57,8 @@ public class SetmealController {
         List<DishItemVO> list = setmealService.getDishItemById(id);
         return Result.success(list);
     }
+
+    @ApiModel("套餐列表结果")
+    static class SetmealListResult extends Result<List<Setmeal>> {
+    }
 }
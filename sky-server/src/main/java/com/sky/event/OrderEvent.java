@@ -0,0 +1,37 @@
+package com.sky.event;
+
+import com.sky.entity.Orders;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 订单事件
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class OrderEvent {
+
+    private final OrderEventType type;
+
+    //事件发生前的订单，下单事件为新插入的订单；定时任务批量处理时包含多个订单
+    private final List<Orders> ordersList;
+
+    //订单的新状态，催单事件为null
+    private final Integer newStatus;
+
+    public OrderEvent(OrderEventType type, Orders orders, Integer newStatus) {
+        this(type, Collections.singletonList(orders), newStatus);
+    }
+
+    /**
+     * 单个订单的事件中的订单
+     */
+    public Orders getOrders() {
+        return ordersList.get(0);
+    }
+}
@@ -0,0 +1,14 @@
+package com.sky.event;
+
+/**
+ * 订单事件监听器，实现该接口的Bean会收到所有订单事件
+ */
+public interface OrderEventListener {
+
+    /**
+     * 处理订单事件，在订单事件线程池中执行，不在订单事务中
+     *
+     * @param event
+     */
+    void onOrderEvent(OrderEvent event);
+}
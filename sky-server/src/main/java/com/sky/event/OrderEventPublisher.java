@@ -0,0 +1,68 @@
+package com.sky.event;
+
+import com.sky.cache.CacheClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 订单事件总线
+ * <p>
+ * 事件在订单事务提交后（没有事务时立即）交给专用线程池，每个监听器单独执行，
+ * 一个监听器出错或变慢不影响其他监听器，也不影响下单、支付等请求的响应。
+ * 线程池队列满时由提交事件的线程执行，事件不会丢失。
+ */
+@Component
+@Slf4j
+public class OrderEventPublisher {
+
+    @Value("${sky.order.event-threads:2}")
+    private int threads;
+
+    @Value("${sky.order.event-queue-capacity:10000}")
+    private int queueCapacity;
+
+    //监听器在分发时才获取，避免监听器依赖事件总线时产生循环依赖
+    @Resource
+    private ObjectProvider<OrderEventListener> listeners;
+
+    private ThreadPoolExecutor eventExecutor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        eventExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> new Thread(r, "order-event-" + threadNumber.incrementAndGet()),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * 发布订单事件，事务提交后异步分发给所有监听器
+     *
+     * @param event
+     */
+    public void publish(OrderEvent event) {
+        CacheClient.afterCommit(() -> listeners.forEach(listener -> eventExecutor.execute(() -> {
+            try {
+                listener.onOrderEvent(event);
+            } catch (Exception e) {
+                log.error("订单事件处理失败：{}，{}", listener.getClass().getSimpleName(), event, e);
+            }
+        })));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        eventExecutor.shutdown();
+    }
+}
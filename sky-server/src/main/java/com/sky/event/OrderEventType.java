@@ -0,0 +1,47 @@
+package com.sky.event;
+
+/**
+ * 订单事件类型
+ */
+public enum OrderEventType {
+
+    /**
+     * 下单
+     */
+    SUBMIT,
+
+    /**
+     * 支付成功
+     */
+    PAY,
+
+    /**
+     * 接单
+     */
+    CONFIRM,
+
+    /**
+     * 拒单
+     */
+    REJECT,
+
+    /**
+     * 取消，包括用户取消、商家取消和超时取消
+     */
+    CANCEL,
+
+    /**
+     * 派送
+     */
+    DELIVER,
+
+    /**
+     * 完成
+     */
+    COMPLETE,
+
+    /**
+     * 催单
+     */
+    REMINDER
+}
@@ -0,0 +1,62 @@
+package com.sky.mapper;
+
+import com.sky.entity.BusinessDaily;
+import org.apache.ibatis.annotations.Mapper;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface BusinessDailyMapper {
+
+    /**
+     * 按订单表重新统计时间段内每天的营业额、订单总数和有效订单数，不影响新增用户数
+     *
+     * @param begin 开始时间（包含）
+     * @param end   结束时间（不包含）
+     */
+    void refreshOrders(LocalDateTime begin, LocalDateTime end);
+
+    /**
+     * 按用户表重新统计时间段内每天的新增用户数，不影响订单数据
+     *
+     * @param begin 开始时间（包含）
+     * @param end   结束时间（不包含）
+     */
+    void refreshNewUsers(LocalDateTime begin, LocalDateTime end);
+
+    /**
+     * 查询日期范围内的日汇总
+     *
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<BusinessDaily> list(LocalDate begin, LocalDate end);
+
+    /**
+     * 汇总日期范围内的营业数据，没有数据时各项为0
+     *
+     * @param begin
+     * @param end
+     * @return
+     */
+    BusinessDaily sum(LocalDate begin, LocalDate end);
+
+    /**
+     * 删除时间段内的日汇总
+     *
+     * @param begin 开始时间（包含）
+     * @param end   结束时间（不包含）
+     */
+    void deleteByDate(LocalDateTime begin, LocalDateTime end);
+
+    /**
+     * 根据订单表和用户表重新生成时间段内的日汇总
+     *
+     * @param begin 开始时间（包含）
+     * @param end   结束时间（不包含）
+     */
+    void rebuild(LocalDateTime begin, LocalDateTime end);
+}
@@ -12,4 +12,12 @@ public interface DishFlavorMapper {
     void deleteByDishIds(List<Long> ids);
 
     List<DishFlavor> getByDishId(Long id);
+
+    /**
+     * 根据菜品id批量查询口味
+     *
+     * @param dishIds
+     * @return
+     */
+    List<DishFlavor> getByDishIds(List<Long> dishIds);
 }
@@ -5,6 +5,7 @@ import com.sky.annotation.AutoFill;
 import com.sky.dto.DishPageQueryDTO;
 import com.sky.entity.Dish;
 import com.sky.enumeration.OperationType;
+import com.sky.vo.DishOverViewVO;
 import com.sky.vo.DishVO;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
@@ -41,4 +42,11 @@ public interface DishMapper {
     List<Dish> getBySetmealId(Long setmealId);
 
     Integer countByMap(Map<String, Object> map);
+
+    /**
+     * 一次查询统计起售和停售的数量
+     *
+     * @return
+     */
+    DishOverViewVO getOverView();
 }
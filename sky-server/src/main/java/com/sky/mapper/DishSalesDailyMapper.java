@@ -0,0 +1,45 @@
+package com.sky.mapper;
+
+import com.sky.dto.GoodsSalesDTO;
+import org.apache.ibatis.annotations.Mapper;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface DishSalesDailyMapper {
+
+    /**
+     * 按订单表重新统计时间段内每天的商品销量，已有的记录被覆盖
+     *
+     * @param begin 开始时间（包含）
+     * @param end   结束时间（不包含）
+     */
+    void refresh(LocalDateTime begin, LocalDateTime end);
+
+    /**
+     * 查询日期范围内销量前10的商品
+     *
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<GoodsSalesDTO> getSalesTop10(LocalDate begin, LocalDate end);
+
+    /**
+     * 删除时间段内的商品销量
+     *
+     * @param begin 开始时间（包含）
+     * @param end   结束时间（不包含）
+     */
+    void deleteByDate(LocalDateTime begin, LocalDateTime end);
+
+    /**
+     * 根据订单表重新生成时间段内的商品销量
+     *
+     * @param begin 开始时间（包含）
+     * @param end   结束时间（不包含）
+     */
+    void rebuild(LocalDateTime begin, LocalDateTime end);
+}
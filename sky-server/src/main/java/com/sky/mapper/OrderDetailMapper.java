@@ -10,4 +10,12 @@ public interface OrderDetailMapper {
     void insertBatch(List<OrderDetail> orderDetailList);
 
     List<OrderDetail> getByOrderId(Long orderId);
+
+    /**
+     * 根据订单id批量查询订单明细
+     *
+     * @param orderIds
+     * @return
+     */
+    List<OrderDetail> getByOrderIds(List<Long> orderIds);
 }
@@ -2,14 +2,16 @@ package com.sky.mapper;
 
 import com.github.pagehelper.Page;
 import com.sky.dto.GoodsSalesDTO;
+import com.sky.dto.OrderExportDTO;
 import com.sky.dto.OrdersPageQueryDTO;
+import com.sky.entity.BusinessDaily;
 import com.sky.entity.Orders;
-import org.apache.ibatis.annotations.MapKey;
+import com.sky.vo.OrderOverViewVO;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.session.ResultHandler;
 
-import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
@@ -30,9 +32,41 @@ public interface OrderMapper {
     @Update("update orders set status = #{orderStatus},pay_status = #{orderPaidStatus} ,checkout_time = #{checkOutTime} where id = #{orderId}")
     void updateStatus(Integer orderStatus, Integer orderPaidStatus, LocalDateTime checkOutTime, Long orderId);
 
-    List<Orders> getByStatusAndOrderTimeLT(Integer status, LocalDateTime localDateTime);
-
-    void cancelOrderById(List<Long> idList, Integer cancelled, String cancelReason, LocalDateTime time);
+    /**
+     * 按id分页查询指定状态、下单时间早于指定时间的订单的id、状态和下单时间，只返回 id % shardCount == shardIndex 的订单
+     *
+     * @param status
+     * @param orderTime
+     * @param lastId     上一页最后一个订单的id，第一页传0
+     * @param limit
+     * @param shardIndex 分片下标
+     * @param shardCount 分片总数
+     * @return
+     */
+    List<Orders> getIdsByStatusAndOrderTimeLT(Integer status, LocalDateTime orderTime, Long lastId, int limit,
+                                              int shardIndex, int shardCount);
+
+
+    /**
+     * 查询并锁定指定状态的订单的id、状态、下单时间和金额，需要在事务中调用
+     *
+     * @param idList
+     * @param status
+     * @return
+     */
+    List<Orders> lockByIdsAndStatus(List<Long> idList, Integer status);
+
+    /**
+     * 修改仍处于指定状态的订单的状态，已变为其他状态的订单不受影响
+     *
+     * @param idList
+     * @param status       订单当前应处的状态
+     * @param newStatus    新状态
+     * @param cancelReason 取消原因，为null时不修改
+     * @param cancelTime   取消时间，为null时不修改
+     * @return 实际修改的订单数
+     */
+    int updateStatusByIds(List<Long> idList, Integer status, Integer newStatus, String cancelReason, LocalDateTime cancelTime);
 
     Page<Orders> pageQuery(OrdersPageQueryDTO ordersPageQueryDTO);
 
@@ -42,11 +76,52 @@ public interface OrderMapper {
     @Select("select count(id) from orders where status = #{status}")
     Integer countStatus(Integer status);
 
-    @MapKey("date")
-    List<Map<String, Object>> getOrderDaySumFromBeginToEnd(LocalDate begin, LocalDate end);
+    /**
+     * 按状态分组统计订单数量
+     *
+     * @param begin 下单时间下限，为null时统计全部订单
+     * @return status、count
+     */
+    List<Map<String, Object>> countGroupByStatus(LocalDateTime begin);
 
     Integer countByMap(Map<String, Object> map);
 
+    /**
+     * 一次查询统计时间段内的营业额、订单总数和有效订单数
+     *
+     * @param begin
+     * @param end
+     * @return turnover、orderCount、validOrderCount
+     */
+    BusinessDaily sumBusinessData(LocalDateTime begin, LocalDateTime end);
+
+    /**
+     * 一次查询统计指定时间之后各状态的订单数
+     *
+     * @param begin
+     * @return
+     */
+    OrderOverViewVO getOverView(LocalDateTime begin);
+
+    /**
+     * 按天统计时间段内的营业额、订单总数和有效订单数
+     *
+     * @param begin 开始时间（包含）
+     * @param end   结束时间（不包含）
+     * @return date、turnover、order_count、valid_order_count
+     */
+    List<Map<String, Object>> getOrderStatisticsGroupByDay(LocalDateTime begin, LocalDateTime end);
+
+
+    /**
+     * 按下单时间流式读取时间段内的订单及其商品，每个商品一行，同一订单的行相邻；
+     * 每读到一行回调一次，不在内存中保存整个结果集
+     *
+     * @param begin   开始时间（包含）
+     * @param end     结束时间（不包含）
+     * @param handler 订单商品回调
+     */
+    void streamWithDetailByOrderTime(LocalDateTime begin, LocalDateTime end, ResultHandler<OrderExportDTO> handler);
 
     List<GoodsSalesDTO> getSalesTop10(LocalDateTime begin, LocalDateTime end);
 
@@ -20,4 +20,35 @@ public interface ShoppingCartMapper {
     void deleteByUserId(Long userId);
 
     void insertBatch(List<ShoppingCart> shoppingCartList);
+
+    /**
+     * 新增购物车项，已存在时数量累加
+     *
+     * @param shoppingCart
+     */
+    void upsert(ShoppingCart shoppingCart);
+
+    /**
+     * 购物车项数量加一
+     *
+     * @param shoppingCart
+     * @return 影响行数，为0表示购物车项不存在
+     */
+    int incrementNumber(ShoppingCart shoppingCart);
+
+    /**
+     * 购物车项数量大于1时减一
+     *
+     * @param shoppingCart
+     * @return 影响行数
+     */
+    int decrementNumber(ShoppingCart shoppingCart);
+
+    /**
+     * 购物车项数量不大于1时删除
+     *
+     * @param shoppingCart
+     * @return 影响行数
+     */
+    int deleteLastOne(ShoppingCart shoppingCart);
 }
@@ -3,6 +3,8 @@ package com.sky.mapper;
 import com.sky.entity.User;
 import org.apache.ibatis.annotations.Mapper;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 
 @Mapper
@@ -14,4 +16,13 @@ public interface UserMapper {
     User getById(Long userId);
 
     Integer countByMap(Map<String, Object> map);
+
+    /**
+     * 按天统计时间段内的新增用户数
+     *
+     * @param begin 开始时间（包含）
+     * @param end   结束时间（不包含）
+     * @return date、new_user_count
+     */
+    List<Map<String, Object>> getNewUserCountGroupByDay(LocalDateTime begin, LocalDateTime end);
 }
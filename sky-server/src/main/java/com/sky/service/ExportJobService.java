@@ -0,0 +1,32 @@
+package com.sky.service;
+
+import com.sky.vo.ExportJobVO;
+
+import javax.servlet.http.HttpServletResponse;
+import java.time.LocalDate;
+
+public interface ExportJobService {
+
+    /**
+     * 提交导出任务，相同参数的任务未完成时返回已有任务
+     * @param begin
+     * @param end
+     * @param detail
+     * @return
+     */
+    ExportJobVO submit(LocalDate begin, LocalDate end, boolean detail);
+
+    /**
+     * 查询导出任务
+     * @param id
+     * @return
+     */
+    ExportJobVO getById(String id);
+
+    /**
+     * 下载已完成的导出文件
+     * @param id
+     * @param response
+     */
+    void download(String id, HttpServletResponse response);
+}
@@ -0,0 +1,8 @@
+package com.sky.service;
+
+import com.sky.vo.MenuVO;
+
+public interface MenuService {
+
+    MenuVO getMenu(Long version);
+}
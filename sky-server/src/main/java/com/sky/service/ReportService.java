@@ -6,6 +6,7 @@ import com.sky.vo.TurnoverReportVO;
 import com.sky.vo.UserReportVO;
 
 import javax.servlet.http.HttpServletResponse;
+import java.io.OutputStream;
 import java.time.LocalDate;
 
 public interface ReportService {
@@ -17,5 +18,16 @@ public interface ReportService {
 
     SalesTop10ReportVO getSalesTop10(LocalDate begin, LocalDate end);
 
-    void exportBusinessData(HttpServletResponse response);
+    void exportBusinessData(LocalDate begin, LocalDate end, boolean detail, HttpServletResponse response);
+
+    void exportBusinessData(LocalDate begin, LocalDate end, boolean detail, OutputStream out);
+
+    String getExportFileName(LocalDate begin, LocalDate end);
+
+    /**
+     * 校验导出日期范围，开始日期晚于结束日期或范围超过上限时抛出异常
+     * @param begin
+     * @param end
+     */
+    void checkExportRange(LocalDate begin, LocalDate end);
 }
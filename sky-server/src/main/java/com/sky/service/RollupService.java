@@ -0,0 +1,25 @@
+package com.sky.service;
+
+import java.time.LocalDate;
+
+public interface RollupService {
+
+    /**
+     * 是否启用营业数据日汇总
+     * @return
+     */
+    boolean isEnabled();
+
+    /**
+     * 新用户注册后重新统计当日新增用户数
+     * @param date
+     */
+    void onUserRegistered(LocalDate date);
+
+    /**
+     * 根据订单表和用户表重新生成日期范围内的日汇总
+     * @param begin 开始日期（包含）
+     * @param end   结束日期（包含）
+     */
+    void reconcile(LocalDate begin, LocalDate end);
+}
@@ -14,5 +14,6 @@ public interface ShoppingCartService {
     void subShoppingCart(ShoppingCartDTO shoppingCartDTO);
 
     void cleanShoppingCart();
-    
+
+    void addBatch(List<ShoppingCart> shoppingCartList);
 }
@@ -2,6 +2,8 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.CacheClient;
+import com.sky.cache.MenuVersion;
 import com.sky.constant.MessageConstant;
 import com.sky.dto.CategoryDTO;
 import com.sky.dto.CategoryPageQueryDTO;
@@ -31,13 +33,16 @@ public class CategoryServiceImpl implements CategoryService {
     @Resource
     private SetmealMapper setmealMapper;
 
+    @Resource
+    private MenuVersion menuVersion;
+
     @Override
     public void update(CategoryDTO categoryDTO) {
         Category category = new Category();
         BeanUtils.copyProperties(categoryDTO, category);
 
         categoryMapper.update(category);
-
+        CacheClient.afterCommit(menuVersion::increment);
     }
 
     @Override
@@ -55,6 +60,7 @@ public class CategoryServiceImpl implements CategoryService {
         category.setId(id);
 
         categoryMapper.update(category);
+        CacheClient.afterCommit(menuVersion::increment);
     }
 
     @Override
@@ -62,6 +68,7 @@ public class CategoryServiceImpl implements CategoryService {
         Category category = new Category();
         BeanUtils.copyProperties(categoryDTO, category);
         categoryMapper.save(category);
+        CacheClient.afterCommit(menuVersion::increment);
     }
 
     @Override
@@ -81,6 +88,7 @@ public class CategoryServiceImpl implements CategoryService {
         }
 
         categoryMapper.deleteById(id);
+        CacheClient.afterCommit(menuVersion::increment);
     }
 
     @Override
@@ -1,11 +1,9 @@
 package com.sky.service.impl;
 
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONUtil;
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.DishCache;
 import com.sky.constant.MessageConstant;
-import com.sky.constant.RedisConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.DishDTO;
 import com.sky.dto.DishPageQueryDTO;
@@ -20,7 +18,6 @@ import com.sky.service.DishService;
 import com.sky.vo.DishVO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -28,7 +25,8 @@ import javax.annotation.Resource;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -44,7 +42,7 @@ public class DishServiceImpl implements DishService {
     private SetmealDishMapper setmealDishMapper;
 
     @Resource
-    private StringRedisTemplate stringRedisTemplate;
+    private DishCache dishCache;
 
 
     @Override
@@ -57,6 +55,9 @@ public class DishServiceImpl implements DishService {
 
         Long dishId = dish.getId();
 
+        //清除菜品所属分类的缓存
+        dishCache.evict(Collections.singletonList(dish.getCategoryId()));
+
         List<DishFlavor> flavors = dishDTO.getFlavors();
         if (flavors == null || flavors.isEmpty()) {
             return;
@@ -64,8 +65,6 @@ public class DishServiceImpl implements DishService {
         flavors.forEach(f -> f.setDishId(dishId));
 
         dishFlavorMapper.insertBatch(flavors);
-
-
     }
 
     @Override
@@ -92,6 +91,9 @@ public class DishServiceImpl implements DishService {
 
         dishMapper.deleteBatch(ids);
         dishFlavorMapper.deleteByDishIds(ids);
+
+        //清除被删除菜品所属分类的缓存
+        dishCache.evict(dishList.stream().map(Dish::getCategoryId).collect(Collectors.toList()));
     }
 
     @Override
@@ -117,7 +119,12 @@ public class DishServiceImpl implements DishService {
         Dish dish = new Dish();
         BeanUtils.copyProperties(dishDTO, dish);
 
+        //修改前后的分类都需要清除缓存
+        List<Long> categoryIds = new ArrayList<>(getCategoryIds(dishDTO.getId()));
+        categoryIds.add(dishDTO.getCategoryId());
+
         dishMapper.update(dish);
+        dishCache.evict(categoryIds);
 
         List<DishFlavor> flavors = dishDTO.getFlavors();
         dishFlavorMapper.deleteByDishIds(Collections.singletonList(dishDTO.getId()));
@@ -138,17 +145,20 @@ public class DishServiceImpl implements DishService {
     public List<DishVO> listWithFlavor(Dish dish) {
         List<Dish> dishList = dishMapper.list(dish);
 
-        List<DishVO> dishVOList = new ArrayList<>();
+        if (dishList == null || dishList.isEmpty()) {
+            return new ArrayList<>();
+        }
 
+        //一次性查询所有菜品对应的口味，并按菜品id分组
+        List<Long> dishIds = dishList.stream().map(Dish::getId).collect(Collectors.toList());
+        Map<Long, List<DishFlavor>> flavorMap = dishFlavorMapper.getByDishIds(dishIds).stream()
+                .collect(Collectors.groupingBy(DishFlavor::getDishId));
 
+        List<DishVO> dishVOList = new ArrayList<>(dishList.size());
         for (Dish d : dishList) {
             DishVO dishVO = new DishVO();
             BeanUtils.copyProperties(d, dishVO);
-
-            //根据菜品id查询对应的口味
-            List<DishFlavor> flavors = dishFlavorMapper.getByDishId(d.getId());
-
-            dishVO.setFlavors(flavors);
+            dishVO.setFlavors(flavorMap.getOrDefault(d.getId(), new ArrayList<>()));
             dishVOList.add(dishVO);
         }
 
@@ -157,22 +167,12 @@ public class DishServiceImpl implements DishService {
 
     @Override
     public List<DishVO> listWithFlavorByCategoryId(Long categoryId) {
-
-        String key = RedisConstant.DISH_KEY + categoryId;
-        String json = stringRedisTemplate.opsForValue().get(key);
-
-        if (StrUtil.isNotBlank(json)) {
-            return JSONUtil.toList(json, DishVO.class);
-        }
-
-
-        Dish dish = new Dish();
-        dish.setCategoryId(categoryId);
-        dish.setStatus(StatusConstant.ENABLE); //查询起售中的菜品
-        List<DishVO> list = listWithFlavor(dish);
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(list), RedisConstant.DISH_TTL, RedisConstant.DISH_TTL_Unit);
-
-        return list;
+        return dishCache.get(categoryId, id -> {
+            Dish dish = new Dish();
+            dish.setCategoryId(id);
+            dish.setStatus(StatusConstant.ENABLE); //查询起售中的菜品
+            return listWithFlavor(dish);
+        });
     }
 
     @Override
@@ -181,6 +181,20 @@ public class DishServiceImpl implements DishService {
         dish.setId(id);
         dish.setStatus(status);
         dishMapper.update(dish);
-        
+
+        //清除菜品所属分类的缓存
+        dishCache.evict(getCategoryIds(id));
+    }
+
+    /**
+     * 查询菜品所属的分类id
+     *
+     * @param id 菜品id
+     * @return 分类id列表，菜品不存在时为空列表
+     */
+    private List<Long> getCategoryIds(Long id) {
+        return dishMapper.getByIds(Collections.singletonList(id)).stream()
+                .map(Dish::getCategoryId)
+                .collect(Collectors.toList());
     }
 }
@@ -0,0 +1,351 @@
+package com.sky.service.impl;
+
+import com.sky.constant.MessageConstant;
+import com.sky.constant.RedisConstant;
+import com.sky.exception.ReportExportException;
+import com.sky.service.ExportJobService;
+import com.sky.service.ReportService;
+import com.sky.utils.MinIOUtils;
+import com.sky.vo.ExportJobVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 营业数据异步导出：任务在有界线程池中生成Excel并上传到MinIO，任务状态保存在Redis中，
+ * 相同参数的任务未完成时直接返回已有任务。
+ * 排队和执行中的任务由所在节点定时刷新心跳时间，节点宕机后心跳超时的任务视为中断，标记为失败并释放去重key
+ */
+@Service
+@Slf4j
+public class ExportJobServiceImpl implements ExportJobService {
+
+    private static final String BUCKET_NAME = "cqwm-export";
+    private static final String EXCEL_CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
+    /**
+     * 相同参数的任务已存在时返回其id；否则先写入任务记录，再写入去重key，返回新任务id
+     */
+    private static final RedisScript<String> SUBMIT_SCRIPT = new DefaultRedisScript<>(
+            "local existing = redis.call('GET', KEYS[1]) " +
+                    "if existing then return existing end " +
+                    "redis.call('HSET', KEYS[2], unpack(ARGV, 3)) " +
+                    "redis.call('EXPIRE', KEYS[2], ARGV[2]) " +
+                    "redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[2]) " +
+                    "return ARGV[1]", String.class);
+
+    /**
+     * 去重key仍指向该任务时删除
+     */
+    private static final RedisScript<Long> RELEASE_DEDUP_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end " +
+                    "return 0", Long.class);
+
+    private static final long HEARTBEAT_INTERVAL_MILLIS = 30_000;
+
+    //超过该时间没有心跳的未完成任务视为中断
+    private static final long STALE_MILLIS = 3 * HEARTBEAT_INTERVAL_MILLIS;
+
+    @Value("${sky.report.export-threads:2}")
+    private int threads;
+
+    @Value("${sky.report.export-queue-capacity:16}")
+    private int queueCapacity;
+
+    @Resource
+    private ReportService reportService;
+
+    @Resource
+    private MinIOUtils minIOUtils;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    private ThreadPoolExecutor exportExecutor;
+
+    private ScheduledExecutorService heartbeatExecutor;
+
+    //本节点排队和执行中的任务id
+    private final Set<String> activeJobs = ConcurrentHashMap.newKeySet();
+
+    //是否已为导出桶设置过期规则
+    private volatile boolean bucketReady;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        exportExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> new Thread(r, "report-export-" + threadNumber.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "report-export-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeatExecutor.scheduleAtFixedRate(this::heartbeat, HEARTBEAT_INTERVAL_MILLIS, HEARTBEAT_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public ExportJobVO submit(LocalDate begin, LocalDate end, boolean detail) {
+        reportService.checkExportRange(begin, end);
+
+        String dedupKey = getDedupKey(begin, end, detail);
+        String id = UUID.randomUUID().toString().replace("-", "");
+        ExportJobVO job = ExportJobVO.builder()
+                .id(id)
+                .status(ExportJobVO.PENDING)
+                .begin(begin)
+                .end(end)
+                .detail(detail)
+                .fileName(reportService.getExportFileName(begin, end))
+                .createTime(LocalDateTime.now())
+                .build();
+        Map<String, String> fields = new HashMap<>();
+        fields.put("status", job.getStatus().toString());
+        fields.put("begin", begin.toString());
+        fields.put("end", end.toString());
+        fields.put("detail", String.valueOf(detail));
+        fields.put("fileName", job.getFileName());
+        fields.put("createTime", job.getCreateTime().toString());
+        fields.put("heartbeat", String.valueOf(System.currentTimeMillis()));
+
+        // 任务记录和去重key在同一脚本中写入，相同参数的任务未完成时复用该任务
+        List<String> args = new ArrayList<>();
+        args.add(id);
+        args.add(String.valueOf(RedisConstant.EXPORT_JOB_TTL_Unit.toSeconds(RedisConstant.EXPORT_JOB_TTL)));
+        fields.forEach((field, value) -> {
+            args.add(field);
+            args.add(value);
+        });
+        List<String> keys = Arrays.asList(dedupKey, RedisConstant.EXPORT_JOB_KEY + id);
+        String jobId = stringRedisTemplate.execute(SUBMIT_SCRIPT, keys, args.toArray());
+        if (jobId != null && !id.equals(jobId)) {
+            ExportJobVO existing = find(jobId);
+            if (existing == null) {
+                // 去重key存在而任务记录缺失时视为正在执行，不重复提交
+                job.setId(jobId);
+                return job;
+            }
+            if (!ExportJobVO.FAILED.equals(existing.getStatus())
+                    || !MessageConstant.EXPORT_JOB_INTERRUPTED.equals(existing.getErrorMessage())) {
+                return existing;
+            }
+            // 已有任务中断，去重key已释放，重新提交
+            jobId = stringRedisTemplate.execute(SUBMIT_SCRIPT, keys, args.toArray());
+            if (jobId != null && !id.equals(jobId)) {
+                return getById(jobId);
+            }
+        }
+
+        activeJobs.add(id);
+        try {
+            exportExecutor.execute(() -> export(job, dedupKey));
+        } catch (RejectedExecutionException e) {
+            activeJobs.remove(id);
+            stringRedisTemplate.delete(RedisConstant.EXPORT_JOB_KEY + id);
+            releaseDedupKey(dedupKey, id);
+            throw new ReportExportException(MessageConstant.EXPORT_JOB_BUSY);
+        }
+        return job;
+    }
+
+    @Override
+    public ExportJobVO getById(String id) {
+        ExportJobVO job = find(id);
+        if (job == null) {
+            throw new ReportExportException(MessageConstant.EXPORT_JOB_NOT_FOUND);
+        }
+        return job;
+    }
+
+    @Override
+    public void download(String id, HttpServletResponse response) {
+        ExportJobVO job = getById(id);
+        if (!ExportJobVO.SUCCESS.equals(job.getStatus())) {
+            throw new ReportExportException(MessageConstant.EXPORT_JOB_NOT_FINISHED);
+        }
+
+        response.setContentType(EXCEL_CONTENT_TYPE);
+        response.setHeader("Content-Disposition", "attachment; filename=" + job.getFileName());
+        try (InputStream in = minIOUtils.download(BUCKET_NAME, getObjectName(id))) {
+            StreamUtils.copy(in, response.getOutputStream());
+        } catch (Exception e) {
+            log.error("下载导出文件失败：{}", id, e);
+            throw new ReportExportException(MessageConstant.EXPORT_FAILED);
+        }
+    }
+
+    /**
+     * 生成Excel到临时文件后上传到MinIO
+     */
+    private void export(ExportJobVO job, String dedupKey) {
+        String id = job.getId();
+        save(id, "status", ExportJobVO.RUNNING.toString());
+
+        File file = null;
+        try {
+            file = File.createTempFile("export-" + id, ".xlsx");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file.toPath()))) {
+                reportService.exportBusinessData(job.getBegin(), job.getEnd(), job.getDetail(), out);
+            }
+            prepareBucket();
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                minIOUtils.uploadFile(in, BUCKET_NAME, getObjectName(id));
+            }
+
+            Map<String, String> fields = new HashMap<>();
+            fields.put("status", ExportJobVO.SUCCESS.toString());
+            fields.put("finishTime", LocalDateTime.now().toString());
+            save(id, fields);
+            log.info("导出任务完成：{}", id);
+        } catch (Exception e) {
+            log.error("导出任务失败：{}", id, e);
+            Map<String, String> fields = new HashMap<>();
+            fields.put("status", ExportJobVO.FAILED.toString());
+            fields.put("errorMessage", MessageConstant.EXPORT_FAILED);
+            fields.put("finishTime", LocalDateTime.now().toString());
+            save(id, fields);
+        } finally {
+            if (file != null && !file.delete()) {
+                file.deleteOnExit();
+            }
+            activeJobs.remove(id);
+            // 任务结束后允许再次提交相同参数的导出
+            releaseDedupKey(dedupKey, id);
+        }
+    }
+
+    /**
+     * 刷新本节点未完成任务的心跳时间
+     */
+    private void heartbeat() {
+        String now = String.valueOf(System.currentTimeMillis());
+        for (String id : activeJobs) {
+            try {
+                stringRedisTemplate.opsForHash().put(RedisConstant.EXPORT_JOB_KEY + id, "heartbeat", now);
+            } catch (Exception e) {
+                log.error("刷新导出任务心跳失败：{}", id, e);
+            }
+        }
+    }
+
+    /**
+     * 心跳超时的未完成任务标记为失败，并释放去重key
+     */
+    private void markInterrupted(ExportJobVO job) {
+        log.warn("导出任务心跳超时，标记为中断：{}", job.getId());
+        Map<String, String> fields = new HashMap<>();
+        fields.put("status", ExportJobVO.FAILED.toString());
+        fields.put("errorMessage", MessageConstant.EXPORT_JOB_INTERRUPTED);
+        fields.put("finishTime", LocalDateTime.now().toString());
+        save(job.getId(), fields);
+        releaseDedupKey(getDedupKey(job.getBegin(), job.getEnd(), job.getDetail()), job.getId());
+
+        job.setStatus(ExportJobVO.FAILED);
+        job.setErrorMessage(MessageConstant.EXPORT_JOB_INTERRUPTED);
+    }
+
+    private void releaseDedupKey(String dedupKey, String id) {
+        stringRedisTemplate.execute(RELEASE_DEDUP_SCRIPT, Collections.singletonList(dedupKey), id);
+    }
+
+    private String getDedupKey(LocalDate begin, LocalDate end, boolean detail) {
+        return RedisConstant.EXPORT_JOB_DEDUP_KEY + begin + ":" + end + ":" + detail;
+    }
+
+    /**
+     * 创建导出桶并设置与任务记录相同的过期时间，任务过期后文件由MinIO自动删除
+     */
+    private void prepareBucket() throws Exception {
+        if (bucketReady) {
+            return;
+        }
+        minIOUtils.createBucket(BUCKET_NAME);
+        minIOUtils.setExpiration(BUCKET_NAME, (int) Math.max(1, RedisConstant.EXPORT_JOB_TTL_Unit.toDays(RedisConstant.EXPORT_JOB_TTL)));
+        bucketReady = true;
+    }
+
+    private ExportJobVO find(String id) {
+        Map<Object, Object> fields = stringRedisTemplate.opsForHash().entries(RedisConstant.EXPORT_JOB_KEY + id);
+        if (fields.isEmpty()) {
+            return null;
+        }
+        Object finishTime = fields.get("finishTime");
+        ExportJobVO job = ExportJobVO.builder()
+                .id(id)
+                .status(Integer.valueOf((String) fields.get("status")))
+                .begin(LocalDate.parse((String) fields.get("begin")))
+                .end(LocalDate.parse((String) fields.get("end")))
+                .detail(Boolean.valueOf((String) fields.get("detail")))
+                .fileName((String) fields.get("fileName"))
+                .errorMessage((String) fields.get("errorMessage"))
+                .createTime(LocalDateTime.parse((String) fields.get("createTime")))
+                .finishTime(finishTime == null ? null : LocalDateTime.parse((String) finishTime))
+                .build();
+
+        Object heartbeat = fields.get("heartbeat");
+        boolean unfinished = ExportJobVO.PENDING.equals(job.getStatus()) || ExportJobVO.RUNNING.equals(job.getStatus());
+        if (unfinished && heartbeat != null
+                && System.currentTimeMillis() - Long.parseLong((String) heartbeat) > STALE_MILLIS) {
+            markInterrupted(job);
+        }
+        return job;
+    }
+
+    private void save(String id, String field, String value) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put(field, value);
+        save(id, fields);
+    }
+
+    private void save(String id, Map<String, String> fields) {
+        String key = RedisConstant.EXPORT_JOB_KEY + id;
+        stringRedisTemplate.opsForHash().putAll(key, fields);
+        stringRedisTemplate.expire(key, RedisConstant.EXPORT_JOB_TTL, RedisConstant.EXPORT_JOB_TTL_Unit);
+    }
+
+    private String getObjectName(String id) {
+        return id + ".xlsx";
+    }
+
+    @PreDestroy
+    public void destroy() {
+        heartbeatExecutor.shutdownNow();
+        exportExecutor.shutdown();
+    }
+}
@@ -0,0 +1,83 @@
+package com.sky.service.impl;
+
+import com.sky.cache.DishCache;
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Category;
+import com.sky.entity.Dish;
+import com.sky.service.CategoryService;
+import com.sky.service.DishService;
+import com.sky.service.MenuService;
+import com.sky.service.SetmealService;
+import com.sky.vo.MenuCategoryVO;
+import com.sky.vo.MenuVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class MenuServiceImpl implements MenuService {
+
+    private static final Integer DISH_CATEGORY = 1;
+
+    @Resource
+    private CategoryService categoryService;
+
+    @Resource
+    private DishService dishService;
+
+    @Resource
+    private SetmealService setmealService;
+
+    @Resource
+    private DishCache dishCache;
+
+    /**
+     * 组装整体菜单快照。
+     * <p>
+     * 菜品、套餐均按分类从 Redis 缓存读取，某次变更只会使对应分类的缓存失效，
+     * 因此重建快照时只有发生变更的分类需要查询数据库。
+     *
+     * @param version 当前菜单版本号
+     * @return 菜单快照
+     */
+    @Override
+    public MenuVO getMenu(Long version) {
+        log.info("build menu snapshot, version: {}", version);
+        List<MenuCategoryVO> categories = categoryService.list(null).stream()
+                .filter(c -> StatusConstant.ENABLE.equals(c.getStatus()))
+                .sorted(Comparator.comparing(Category::getSort, Comparator.nullsLast(Comparator.naturalOrder())))
+                .map(this::toMenuCategory)
+                .collect(Collectors.toList());
+
+        return MenuVO.builder()
+                .version(version)
+                .categories(categories)
+                .build();
+    }
+
+    private MenuCategoryVO toMenuCategory(Category category) {
+        MenuCategoryVO menuCategoryVO = MenuCategoryVO.builder()
+                .id(category.getId())
+                .type(category.getType())
+                .name(category.getName())
+                .sort(category.getSort())
+                .build();
+
+        if (DISH_CATEGORY.equals(category.getType())) {
+            menuCategoryVO.setDishes(dishCache.getFromRedis(category.getId(), id -> {
+                Dish dish = new Dish();
+                dish.setCategoryId(id);
+                dish.setStatus(StatusConstant.ENABLE);
+                return dishService.listWithFlavor(dish);
+            }));
+        } else {
+            menuCategoryVO.setSetmeals(setmealService.listById(category.getId()));
+        }
+        return menuCategoryVO;
+    }
+}
@@ -4,16 +4,21 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.OrderStatusCounter;
 import com.sky.constant.MessageConstant;
 import com.sky.context.BaseContext;
 import com.sky.dto.*;
 import com.sky.entity.*;
+import com.sky.event.OrderEvent;
+import com.sky.event.OrderEventPublisher;
+import com.sky.event.OrderEventType;
 import com.sky.exception.AddressBookBusinessException;
 import com.sky.exception.OrderBusinessException;
 import com.sky.exception.ShoppingCartBusinessException;
 import com.sky.mapper.*;
 import com.sky.result.PageResult;
 import com.sky.service.OrderService;
+import com.sky.service.ShoppingCartService;
 import com.sky.utils.HttpClientUtil;
 import com.sky.utils.RedisIdWorker;
 import com.sky.utils.WeChatPayUtil;
@@ -23,7 +28,6 @@ import com.sky.vo.OrderSubmitVO;
 import com.alibaba.fastjson.JSONObject;
 
 import com.sky.vo.OrderVO;
-import com.sky.websocket.WebSocketServer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Value;
@@ -35,6 +39,7 @@ import javax.annotation.Resource;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -49,9 +54,6 @@ public class OrderServiceImpl implements OrderService {
     @Value("${sky.baidu.ak}")
     private String ak;
 
-    @Resource
-    private WebSocketServer webSocketServer;
-
 
     public static final BigDecimal FREIGHT = BigDecimal.valueOf(6);
     @Resource
@@ -61,7 +63,7 @@ public class OrderServiceImpl implements OrderService {
     private OrderDetailMapper orderDetailMapper;
 
     @Resource
-    private ShoppingCartMapper shoppingCartMapper;
+    private ShoppingCartService shoppingCartService;
 
     @Resource
     private AddressBookMapper addressBookMapper;
@@ -73,6 +75,13 @@ public class OrderServiceImpl implements OrderService {
     private UserMapper userMapper;
 
 
+    @Resource
+    private OrderStatusCounter orderStatusCounter;
+
+    @Resource
+    private OrderEventPublisher orderEventPublisher;
+
+
     @Override
     @Transactional
     public OrderSubmitVO submitOrder(OrdersSubmitDTO ordersSubmitDTO) {
@@ -85,7 +94,7 @@ public class OrderServiceImpl implements OrderService {
 //        checkOutOfRange(addressBook.getCityName() + addressBook.getDistrictName() + addressBook.getDetail());
 
         // list shopping cart
-        List<ShoppingCart> list = shoppingCartMapper.list(ShoppingCart.builder().userId(BaseContext.getCurrentId()).build());
+        List<ShoppingCart> list = shoppingCartService.list();
 
         if (list == null || list.isEmpty()) {
             throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_IS_NULL);
@@ -114,9 +123,10 @@ public class OrderServiceImpl implements OrderService {
             return orderDetail;
         }).collect(Collectors.toList());
         orderDetailMapper.insertBatch(orderDetailList);
+        orderEventPublisher.publish(new OrderEvent(OrderEventType.SUBMIT, orders, orders.getStatus()));
 
         // clear shopping cart
-        shoppingCartMapper.deleteByUserId(BaseContext.getCurrentId());
+        shoppingCartService.cleanShoppingCart();
         return OrderSubmitVO.builder()
                 .id(orders.getId())
                 .orderTime(orders.getOrderTime())
@@ -210,14 +220,8 @@ public class OrderServiceImpl implements OrderService {
                 .build();
 
         orderMapper.update(orders);
-
-        Map<String, Object> map = new HashMap<>();
-        map.put("type", 1);
-        map.put("orderId", ordersDB.getId());
-        map.put("content", "订单号：" + outTradeNo);
-
-        String json = JSON.toJSONString(map);
-        webSocketServer.sendToAllClient(json);
+        // 计数、超时队列和来单提醒在事务提交后异步处理
+        orderEventPublisher.publish(new OrderEvent(OrderEventType.PAY, ordersDB, Orders.TO_BE_CONFIRMED));
     }
 
     @Override
@@ -236,15 +240,13 @@ public class OrderServiceImpl implements OrderService {
 
         // 查询出订单明细，并封装入OrderVO进行响应
         if (page != null && page.getTotal() > 0) {
-            for (Orders orders : page) {
-                Long orderId = orders.getId();// 订单id
-
-                // 查询订单明细
-                List<OrderDetail> orderDetails = orderDetailMapper.getByOrderId(orderId);
+            // 一次性查询当前页所有订单的明细，并按订单id分组
+            Map<Long, List<OrderDetail>> orderDetailMap = getOrderDetailMap(page.getResult());
 
+            for (Orders orders : page) {
                 OrderVO orderVO = new OrderVO();
                 BeanUtils.copyProperties(orders, orderVO);
-                orderVO.setOrderDetailList(orderDetails);
+                orderVO.setOrderDetailList(orderDetailMap.getOrDefault(orders.getId(), Collections.emptyList()));
 
                 list.add(orderVO);
             }
@@ -297,6 +299,7 @@ public class OrderServiceImpl implements OrderService {
         orders.setCancelReason("用户取消");
         orders.setCancelTime(LocalDateTime.now());
         orderMapper.update(orders);
+        orderEventPublisher.publish(new OrderEvent(OrderEventType.CANCEL, ordersDB, Orders.CANCELLED));
     }
 
     @Override
@@ -319,8 +322,8 @@ public class OrderServiceImpl implements OrderService {
             return shoppingCart;
         }).collect(Collectors.toList());
 
-        // 将购物车对象批量添加到数据库
-        shoppingCartMapper.insertBatch(shoppingCartList);
+        // 将购物车对象批量添加到购物车
+        shoppingCartService.addBatch(shoppingCartList);
     }
 
     public PageResult conditionSearch(OrdersPageQueryDTO ordersPageQueryDTO) {
@@ -336,6 +339,10 @@ public class OrderServiceImpl implements OrderService {
 
     @Override
     public OrderStatisticsVO statistics() {
+        if (orderStatusCounter.isEnabled()) {
+            return orderStatusCounter.getStatistics();
+        }
+
         // 根据状态，分别查询出待接单、待派送、派送中的订单数量
         Integer toBeConfirmed = orderMapper.countStatus(Orders.TO_BE_CONFIRMED);
         Integer confirmed = orderMapper.countStatus(Orders.CONFIRMED);
@@ -351,12 +358,17 @@ public class OrderServiceImpl implements OrderService {
 
     @Override
     public void confirm(OrdersConfirmDTO ordersConfirmDTO) {
+        Orders ordersDB = orderMapper.getById(ordersConfirmDTO.getId());
+
         Orders orders = Orders.builder()
                 .id(ordersConfirmDTO.getId())
                 .status(Orders.CONFIRMED)
                 .build();
 
         orderMapper.update(orders);
+        if (ordersDB != null) {
+            orderEventPublisher.publish(new OrderEvent(OrderEventType.CONFIRM, ordersDB, Orders.CONFIRMED));
+        }
     }
 
     @Override
@@ -385,6 +397,7 @@ public class OrderServiceImpl implements OrderService {
         orders.setCancelTime(LocalDateTime.now());
 
         orderMapper.update(orders);
+        orderEventPublisher.publish(new OrderEvent(OrderEventType.REJECT, ordersDB, Orders.CANCELLED));
     }
 
     @Override
@@ -407,6 +420,7 @@ public class OrderServiceImpl implements OrderService {
         orders.setCancelReason(ordersCancelDTO.getCancelReason());
         orders.setCancelTime(LocalDateTime.now());
         orderMapper.update(orders);
+        orderEventPublisher.publish(new OrderEvent(OrderEventType.CANCEL, ordersDB, Orders.CANCELLED));
     }
 
     @Override
@@ -425,6 +439,7 @@ public class OrderServiceImpl implements OrderService {
         orders.setStatus(Orders.DELIVERY_IN_PROGRESS);
 
         orderMapper.update(orders);
+        orderEventPublisher.publish(new OrderEvent(OrderEventType.DELIVER, ordersDB, Orders.DELIVERY_IN_PROGRESS));
     }
 
     @Override
@@ -444,6 +459,7 @@ public class OrderServiceImpl implements OrderService {
         orders.setDeliveryTime(LocalDateTime.now());
 
         orderMapper.update(orders);
+        orderEventPublisher.publish(new OrderEvent(OrderEventType.COMPLETE, ordersDB, Orders.COMPLETED));
     }
 
     @Override
@@ -454,45 +470,56 @@ public class OrderServiceImpl implements OrderService {
             throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
         }
 
-        Map<String, Object> map = new HashMap<>();
-        map.put("type", 2);
-        map.put("orderId", orders.getId());
-        map.put("content", "订单号：" + orders.getNumber());
-
-        String json = JSON.toJSONString(map);
-        webSocketServer.sendToAllClient(json);
+        orderEventPublisher.publish(new OrderEvent(OrderEventType.REMINDER, orders, null));
     }
 
     private List<OrderVO> getOrderVOList(Page<Orders> page) {
         // 需要返回订单菜品信息，自定义OrderVO响应结果
-        List<OrderVO> orderVOList = new ArrayList<>();
-
         List<Orders> ordersList = page.getResult();
-        if (!CollectionUtils.isEmpty(ordersList)) {
-            for (Orders orders : ordersList) {
-                // 将共同字段复制到OrderVO
-                OrderVO orderVO = new OrderVO();
-                BeanUtils.copyProperties(orders, orderVO);
-                String orderDishes = getOrderDishesStr(orders);
+        if (CollectionUtils.isEmpty(ordersList)) {
+            return new ArrayList<>();
+        }
 
-                // 将订单菜品信息封装到orderVO中，并添加到orderVOList
-                orderVO.setOrderDishes(orderDishes);
-                orderVOList.add(orderVO);
-            }
+        // 一次性查询当前页所有订单的菜品详情，并按订单id分组
+        Map<Long, List<OrderDetail>> orderDetailMap = getOrderDetailMap(ordersList);
+
+        List<OrderVO> orderVOList = new ArrayList<>(ordersList.size());
+        for (Orders orders : ordersList) {
+            // 将共同字段复制到OrderVO
+            OrderVO orderVO = new OrderVO();
+            BeanUtils.copyProperties(orders, orderVO);
+            String orderDishes = getOrderDishesStr(orderDetailMap.getOrDefault(orders.getId(), Collections.emptyList()));
+
+            // 将订单菜品信息封装到orderVO中，并添加到orderVOList
+            orderVO.setOrderDishes(orderDishes);
+            orderVOList.add(orderVO);
         }
         return orderVOList;
     }
 
 
-    private String getOrderDishesStr(Orders orders) {
-        // 查询订单菜品详情信息（订单中的菜品和数量）
-        List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderId(orders.getId());
-
+    private String getOrderDishesStr(List<OrderDetail> orderDetailList) {
         // 将每一条 订单菜品信息拼接为字符串（格式：宫保鸡丁 *3；）
-        List<String> orderDishList = orderDetailList.stream().map(x -> x.getName() + "*" + x.getNumber() + ";").collect(Collectors.toList());
+        StringBuilder orderDishes = new StringBuilder(orderDetailList.size() * 16);
+        for (OrderDetail orderDetail : orderDetailList) {
+            orderDishes.append(orderDetail.getName()).append('*').append(orderDetail.getNumber()).append(';');
+        }
+        return orderDishes.toString();
+    }
 
-        // 将该订单对应的所有菜品信息拼接在一起
-        return String.join("", orderDishList);
+    /**
+     * 批量查询订单明细，并按订单id分组
+     *
+     * @param ordersList
+     * @return
+     */
+    private Map<Long, List<OrderDetail>> getOrderDetailMap(List<Orders> ordersList) {
+        if (CollectionUtils.isEmpty(ordersList)) {
+            return Collections.emptyMap();
+        }
+        List<Long> orderIds = ordersList.stream().map(Orders::getId).collect(Collectors.toList());
+        return orderDetailMapper.getByOrderIds(orderIds).stream()
+                .collect(Collectors.groupingBy(OrderDetail::getOrderId));
     }
 
     private void checkOutOfRange(String address) {
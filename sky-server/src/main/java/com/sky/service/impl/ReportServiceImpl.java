@@ -1,29 +1,43 @@
 package com.sky.service.impl;
 
+import com.sky.constant.MessageConstant;
 import com.sky.constant.RedisConstant;
 import com.sky.dto.GoodsSalesDTO;
-import com.sky.entity.Orders;
+import com.sky.dto.OrderExportDTO;
+import com.sky.entity.BusinessDaily;
+import com.sky.exception.ReportExportException;
+import com.sky.mapper.BusinessDailyMapper;
+import com.sky.mapper.DishSalesDailyMapper;
 import com.sky.mapper.OrderMapper;
 import com.sky.mapper.UserMapper;
 import com.sky.service.ReportService;
-import com.sky.service.WorkspaceService;
+import com.sky.service.RollupService;
 import com.sky.vo.*;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.StringUtils;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFRow;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
-import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -31,12 +45,32 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ReportServiceImpl implements ReportService {
 
+    //模板中每日数据的第一行和最后一列
+    private static final int DAILY_FIRST_ROW = 7;
+    private static final int DAILY_LAST_CELL = 6;
+    private static final String EXCEL_CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+    //流式写入时内存中保留的行数
+    private static final int ROW_ACCESS_WINDOW_SIZE = 100;
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String[] ORDER_DETAIL_HEADERS = {"订单号", "下单时间", "订单状态", "订单金额", "收货人", "手机号", "地址", "备注",
+            "商品名称", "口味", "数量", "商品金额"};
+    //下标为订单状态
+    private static final String[] ORDER_STATUS_NAMES = {"", "待付款", "待接单", "已接单", "派送中", "已完成", "已取消"};
+
+    //导出的最大天数
+    @Value("${sky.report.export-max-days:366}")
+    private long exportMaxDays;
+
     @Resource
     private OrderMapper orderMapper;
     @Resource
     private UserMapper userMapper;
     @Resource
-    private WorkspaceService workspaceService;
+    private RollupService rollupService;
+    @Resource
+    private BusinessDailyMapper businessDailyMapper;
+    @Resource
+    private DishSalesDailyMapper dishSalesDailyMapper;
 
 
     /**
@@ -55,27 +89,12 @@ public class ReportServiceImpl implements ReportService {
         if (begin.isAfter(end)) {
             return null;
         }
-        // 通过订单Mapper查询从开始日期到结束日期每天的订单总额
-        List<Map<String, Object>> result = orderMapper.getOrderDaySumFromBeginToEnd(begin, end);
-        // 将查询结果转换为 LocalDate 对应的营业额映射
-        Map<LocalDate, Double> turnoverMap = result.stream()
-                .collect(Collectors.toMap(
-                        r -> ((java.sql.Date) r.get("date")).toLocalDate(),
-                        r -> ((Number) r.get("daily_turnover")).doubleValue()
-                ));
-
-        // 初始化日期列表和营业额列表
-        List<LocalDate> dateList = new ArrayList<>();
-        List<Double> turnoverList = new ArrayList<>();
-
-        // 遍历整个日期范围，确保每一天都有营业额数据
-        LocalDate date = begin;
-        while (!date.isAfter(end)) {
-            // 获取当天的营业额，如果不存在则默认为0.0
-            turnoverList.add(turnoverMap.getOrDefault(date, 0.0));
-            dateList.add(date);
-            date = date.plusDays(1);
-        }
+        List<LocalDate> dateList = getLocalDates(begin, end);
+
+        // 每一天都有营业额数据，没有订单的日期为0
+        List<Double> turnoverList = Arrays.stream(getDailyData(begin, end, true, false))
+                .map(daily -> daily.getTurnover().doubleValue())
+                .collect(Collectors.toList());
 
         // 构建并返回营业额统计报告对象
         return TurnoverReportVO.builder()
@@ -99,32 +118,22 @@ public class ReportServiceImpl implements ReportService {
         // 初始化日期列表，用于存储从开始日期到结束日期之间的每一天
         List<LocalDate> dateList = getLocalDates(begin, end);
 
-        // 初始化新增用户数和总用户数的列表
-        List<Integer> newUserList = new ArrayList<>();
-        List<Integer> totalUserList = new ArrayList<>();
-
-        // 遍历日期列表，统计每天的新增用户数和总用户数
-        for (LocalDate date : dateList) {
-            // 构造每天的开始和结束时间，用于精确统计用户数
-            LocalDateTime beginTime = LocalDateTime.of(date, LocalTime.MIN);
-            LocalDateTime endTime = LocalDateTime.of(date, LocalTime.MAX);
-
-            // 使用HashMap存储开始和结束时间，用于查询用户数
-            Map<String, Object> map = new HashMap<>();
-            map.put("end", endTime);
-
-            // 查询并获取当天的总用户数
-            //总用户数量
-            Integer totalUser = userMapper.countByMap(map);
-
-            // 更新HashMap中的开始时间，查询并获取当天的新增用户数
-            map.put("begin", beginTime);
-            //新增用户数量
-            Integer newUser = userMapper.countByMap(map);
-
-            // 将每天的新增用户数和总用户数添加到对应的列表中
+        // 按日期下标保存每天的新增用户数，没有新增用户的日期为0
+        BusinessDaily[] dailyData = getDailyData(begin, end, false, true);
+
+        // 查询开始日期之前的用户总数作为基数
+        Map<String, Object> map = new HashMap<>();
+        map.put("end", LocalDateTime.of(begin, LocalTime.MIN));
+        Integer baseline = userMapper.countByMap(map);
+
+        // 在基数上逐日累加新增用户数，得到每天的总用户数
+        List<Integer> newUserList = new ArrayList<>(dailyData.length);
+        List<Integer> totalUserList = new ArrayList<>(dailyData.length);
+        int totalUser = baseline == null ? 0 : baseline;
+        for (BusinessDaily daily : dailyData) {
+            totalUser += daily.getNewUsers();
+            newUserList.add(daily.getNewUsers());
             totalUserList.add(totalUser);
-            newUserList.add(newUser);
         }
 
         // 使用StringUtils的join方法将日期列表、新增用户数列表和总用户数列表转换为字符串，方便在VO中存储和传输
@@ -151,26 +160,14 @@ public class ReportServiceImpl implements ReportService {
         // 初始化日期列表，用于存储从开始日期到结束日期的所有日期
         List<LocalDate> dateList = getLocalDates(begin, end);
 
-        // 初始化订单总数列表和完成订单总数列表
-        List<Integer> orderCountList = new ArrayList<>();
-        List<Integer> validOrderCountList = new ArrayList<>();
-
-        // 遍历日期列表，对每个日期统计订单总数和完成订单总数
-        dateList.forEach(localDate -> {
-            // 创建订单统计查询的参数映射
-            Map<String, Object> map = new HashMap<>();
-            map.put("begin", LocalDateTime.of(localDate, LocalTime.MIN));
-            map.put("end", LocalDateTime.of(localDate, LocalTime.MAX));
-            map.put("status", null); // 不限定订单状态，查询所有订单数量
-            Integer orderCount = orderMapper.countByMap(map);
-            orderCountList.add(orderCount);
-
-            // 修改参数映射中的订单状态为已完成，查询完成订单数量
-            map.put("status", Orders.COMPLETED);
-            Integer validOrderCount = orderMapper.countByMap(map);
-            validOrderCountList.add(validOrderCount);
-
-        });
+        // 按日期下标保存每天的订单总数和完成订单数，没有订单的日期为0
+        BusinessDaily[] dailyData = getDailyData(begin, end, true, false);
+        List<Integer> orderCountList = Arrays.stream(dailyData)
+                .map(BusinessDaily::getOrderCount)
+                .collect(Collectors.toList());
+        List<Integer> validOrderCountList = Arrays.stream(dailyData)
+                .map(BusinessDaily::getValidOrderCount)
+                .collect(Collectors.toList());
 
         // 计算所有完成订单的总数和所有订单的总数
         Integer validOrderCount = validOrderCountList.stream().mapToInt(Integer::intValue).sum();
@@ -190,7 +187,9 @@ public class ReportServiceImpl implements ReportService {
     @Override
     @Cacheable(cacheNames = RedisConstant.TOP10_STATISTICS, key = "T(java.lang.String).format('%s:%s',#begin, #end)")
     public SalesTop10ReportVO getSalesTop10(LocalDate begin, LocalDate end) {
-        List<GoodsSalesDTO> goodsSalesDTOList = orderMapper.getSalesTop10(LocalDateTime.of(begin, LocalTime.MIN), LocalDateTime.of(end, LocalTime.MAX));
+        List<GoodsSalesDTO> goodsSalesDTOList = rollupService.isEnabled()
+                ? dishSalesDailyMapper.getSalesTop10(begin, end)
+                : orderMapper.getSalesTop10(LocalDateTime.of(begin, LocalTime.MIN), LocalDateTime.of(end, LocalTime.MAX));
         return SalesTop10ReportVO.builder()
                 .nameList(StringUtils.join(
                         goodsSalesDTOList.stream()
@@ -204,68 +203,256 @@ public class ReportServiceImpl implements ReportService {
     }
 
     /**
-     * 导出业务数据到Excel。
-     * 该方法生成一个包含最近30天业务统计信息的Excel文件，并将其发送到客户端。
-     * 使用模板.xlsx文件作为基础样式，填充数据到相应单元格。
+     * 导出业务数据到Excel，作为附件写入HTTP响应。
      *
+     * @param begin    开始日期
+     * @param end      结束日期
+     * @param detail   是否附带订单明细工作表
      * @param response HTTP响应对象，用于向客户端发送导出的Excel文件。
      */
     @Override
-    public void exportBusinessData(HttpServletResponse response) {
-        // 定义查询开始和结束时间，为过去30天。
-        LocalDate begin = LocalDate.now().minusDays(30);
-        LocalDate end = LocalDate.now().minusDays(1);
-        // 根据开始和结束时间获取业务数据。
-        BusinessDataVO businessDataVO = workspaceService.getBusinessData(
-                LocalDateTime.of(begin, LocalTime.MIN),
-                LocalDateTime.of(end, LocalTime.MAX));
-
-        try (InputStream resource = this.getClass().getClassLoader().getResourceAsStream("template/BusinessTemplate.xlsx");
-             ServletOutputStream out = response.getOutputStream()) {
+    public void exportBusinessData(LocalDate begin, LocalDate end, boolean detail, HttpServletResponse response) {
+        checkExportRange(begin, end);
+        response.setContentType(EXCEL_CONTENT_TYPE);
+        response.setHeader("Content-Disposition", "attachment; filename=" + getExportFileName(begin, end));
+        try {
+            exportBusinessData(begin, end, detail, response.getOutputStream());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 导出业务数据到Excel。
+     * 使用模板.xlsx文件作为基础样式，每日数据一次分组查询得到，概览数据由每日数据汇总，
+     * 通过SXSSFWorkbook流式写入输出流，内存中只保留最近的若干行。
+     *
+     * @param begin  开始日期
+     * @param end    结束日期
+     * @param detail 是否附带订单明细工作表
+     * @param out    输出流，由调用方关闭
+     */
+    @Override
+    public void exportBusinessData(LocalDate begin, LocalDate end, boolean detail, OutputStream out) {
+        checkExportRange(begin, end);
+        BusinessDaily[] dailyData = getDailyData(begin, end);
+
+        try (InputStream resource = this.getClass().getClassLoader().getResourceAsStream("template/BusinessTemplate.xlsx")) {
             // 检查模板文件是否存在。
             if (resource == null) {
                 return;
             }
             // 加载模板文件并获取工作表。
-            XSSFWorkbook workbook = new XSSFWorkbook(resource);
-            XSSFSheet sheet = workbook.getSheet("Sheet1");
+            XSSFWorkbook template = new XSSFWorkbook(resource);
+            XSSFSheet templateSheet = template.getSheet("Sheet1");
 
             // 填充总览数据。
-            sheet.getRow(1).getCell(1).setCellValue("时间：" + begin + " - " + end);
-
-            // 填充汇总数据。
-            XSSFRow row = sheet.getRow(3);
-            row.getCell(2).setCellValue(businessDataVO.getTurnover());
-            row.getCell(4).setCellValue(businessDataVO.getOrderCompletionRate());
-            row.getCell(6).setCellValue(businessDataVO.getNewUsers());
-
-            // 填充每日详细数据。
-            row = sheet.getRow(4);
-            row.getCell(2).setCellValue(businessDataVO.getValidOrderCount());
-            row.getCell(4).setCellValue(businessDataVO.getUnitPrice());
-
-            // 循环填充每日统计数据。
-            for (int i = 0; i < 30; i++) {
-                LocalDate date = begin.plusDays(i);
-                BusinessDataVO businessData = workspaceService.getBusinessData(LocalDateTime.of(date, LocalTime.MIN), LocalDateTime.of(date, LocalTime.MAX));
-                row = sheet.getRow(7 + i);
-                row.getCell(1).setCellValue(date.toString());
-                row.getCell(2).setCellValue(businessData.getTurnover());
-                row.getCell(3).setCellValue(businessData.getValidOrderCount());
-                row.getCell(4).setCellValue(businessData.getOrderCompletionRate());
-                row.getCell(5).setCellValue(businessData.getUnitPrice());
-                row.getCell(6).setCellValue(businessData.getNewUsers());
+            templateSheet.getRow(1).getCell(1).setCellValue("时间：" + begin + " - " + end);
+            BusinessDataVO total = sumBusinessData(dailyData);
+            XSSFRow row = templateSheet.getRow(3);
+            row.getCell(2).setCellValue(total.getTurnover());
+            row.getCell(4).setCellValue(total.getOrderCompletionRate());
+            row.getCell(6).setCellValue(total.getNewUsers());
+            row = templateSheet.getRow(4);
+            row.getCell(2).setCellValue(total.getValidOrderCount());
+            row.getCell(4).setCellValue(total.getUnitPrice());
+
+            // 记下模板中每日数据行的样式后删除这些行，流式写入的行号必须大于已有的最后一行
+            XSSFRow styleRow = templateSheet.getRow(DAILY_FIRST_ROW);
+            short rowHeight = styleRow.getHeight();
+            CellStyle[] styles = new CellStyle[DAILY_LAST_CELL + 1];
+            for (int i = 1; i <= DAILY_LAST_CELL; i++) {
+                styles[i] = styleRow.getCell(i).getCellStyle();
+            }
+            for (int i = templateSheet.getLastRowNum(); i >= DAILY_FIRST_ROW; i--) {
+                XSSFRow templateRow = templateSheet.getRow(i);
+                if (templateRow != null) {
+                    templateSheet.removeRow(templateRow);
+                }
             }
 
-            // 写入输出流并关闭资源。
-            workbook.write(out);
-            out.close();
-            workbook.close();
+            SXSSFWorkbook workbook = new SXSSFWorkbook(template, ROW_ACCESS_WINDOW_SIZE);
+            workbook.setCompressTempFiles(true);
+            try {
+                // 填充每日统计数据。
+                SXSSFSheet sheet = workbook.getSheet("Sheet1");
+                for (int i = 0; i < dailyData.length; i++) {
+                    BusinessDataVO businessData = sumBusinessData(dailyData[i]);
+                    Row dailyRow = sheet.createRow(DAILY_FIRST_ROW + i);
+                    dailyRow.setHeight(rowHeight);
+                    createCell(dailyRow, 1, styles).setCellValue(dailyData[i].getDate().toString());
+                    createCell(dailyRow, 2, styles).setCellValue(businessData.getTurnover());
+                    createCell(dailyRow, 3, styles).setCellValue(businessData.getValidOrderCount());
+                    createCell(dailyRow, 4, styles).setCellValue(businessData.getOrderCompletionRate());
+                    createCell(dailyRow, 5, styles).setCellValue(businessData.getUnitPrice());
+                    createCell(dailyRow, 6, styles).setCellValue(businessData.getNewUsers());
+                }
+
+                if (detail) {
+                    writeOrderDetailSheet(workbook.createSheet("订单明细"), begin, end);
+                }
+
+                workbook.write(out);
+                out.flush();
+            } finally {
+                // 删除流式写入产生的临时文件
+                workbook.dispose();
+                workbook.close();
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    @Override
+    public String getExportFileName(LocalDate begin, LocalDate end) {
+        return "business_" + begin + "_" + end + ".xlsx";
+    }
+
+    @Override
+    public void checkExportRange(LocalDate begin, LocalDate end) {
+        if (begin == null || end == null || begin.isAfter(end)) {
+            throw new ReportExportException(MessageConstant.EXPORT_DATE_ERROR);
+        }
+        if (ChronoUnit.DAYS.between(begin, end) + 1 > exportMaxDays) {
+            throw new ReportExportException(MessageConstant.EXPORT_RANGE_TOO_LARGE);
+        }
+    }
+
+    /**
+     * 按下单时间流式写入订单明细，每个商品一行，订单信息只写在该订单的第一行
+     */
+    private void writeOrderDetailSheet(SXSSFSheet sheet, LocalDate begin, LocalDate end) {
+        Row header = sheet.createRow(0);
+        for (int i = 0; i < ORDER_DETAIL_HEADERS.length; i++) {
+            header.createCell(i).setCellValue(ORDER_DETAIL_HEADERS[i]);
+        }
+
+        int[] rowNum = {1};
+        Long[] lastOrderId = {null};
+        orderMapper.streamWithDetailByOrderTime(LocalDateTime.of(begin, LocalTime.MIN), LocalDateTime.of(end.plusDays(1), LocalTime.MIN),
+                context -> {
+                    OrderExportDTO orders = context.getResultObject();
+                    Row row = sheet.createRow(rowNum[0]++);
+                    if (!orders.getId().equals(lastOrderId[0])) {
+                        lastOrderId[0] = orders.getId();
+                        row.createCell(0).setCellValue(orders.getNumber());
+                        row.createCell(1).setCellValue(DATE_TIME_FORMATTER.format(orders.getOrderTime()));
+                        row.createCell(2).setCellValue(getStatusName(orders.getStatus()));
+                        row.createCell(3).setCellValue(orders.getAmount() == null ? 0 : orders.getAmount().doubleValue());
+                        row.createCell(4).setCellValue(orders.getConsignee());
+                        row.createCell(5).setCellValue(orders.getPhone());
+                        row.createCell(6).setCellValue(orders.getAddress());
+                        row.createCell(7).setCellValue(orders.getRemark());
+                    }
+                    if (orders.getDetailName() != null) {
+                        row.createCell(8).setCellValue(orders.getDetailName());
+                        row.createCell(9).setCellValue(orders.getDishFlavor());
+                        row.createCell(10).setCellValue(orders.getDetailNumber() == null ? 0 : orders.getDetailNumber());
+                        row.createCell(11).setCellValue(orders.getDetailAmount() == null ? 0 : orders.getDetailAmount().doubleValue());
+                    }
+                });
+    }
+
+    private Cell createCell(Row row, int column, CellStyle[] styles) {
+        Cell cell = row.createCell(column);
+        cell.setCellStyle(styles[column]);
+        return cell;
+    }
+
+    private String getStatusName(Integer status) {
+        return status != null && status >= 1 && status < ORDER_STATUS_NAMES.length ? ORDER_STATUS_NAMES[status] : "";
+    }
+
+    /**
+     * 汇总若干天的营业数据
+     */
+    private BusinessDataVO sumBusinessData(BusinessDaily... dailyData) {
+        BigDecimal turnover = BigDecimal.ZERO;
+        int orderCount = 0;
+        int validOrderCount = 0;
+        int newUsers = 0;
+        for (BusinessDaily daily : dailyData) {
+            turnover = turnover.add(daily.getTurnover());
+            orderCount += daily.getOrderCount();
+            validOrderCount += daily.getValidOrderCount();
+            newUsers += daily.getNewUsers();
+        }
+        return BusinessDataVO.builder()
+                .turnover(turnover.doubleValue())
+                .validOrderCount(validOrderCount)
+                .orderCompletionRate(orderCount == 0 ? 0.0 : (double) validOrderCount / orderCount)
+                .unitPrice(validOrderCount == 0 ? 0.0 : turnover.doubleValue() / validOrderCount)
+                .newUsers(newUsers)
+                .build();
+    }
+
+    /**
+     * 按天获取日期范围内的全部营业数据
+     */
+    private BusinessDaily[] getDailyData(LocalDate begin, LocalDate end) {
+        return getDailyData(begin, end, true, true);
+    }
+
+    /**
+     * 按天获取日期范围内的营业数据，下标为相对开始日期的天数，没有数据的日期各项为0。
+     * 启用日汇总时直接读取汇总表，否则只对需要的订单表或用户表分组统计
+     *
+     * @param begin      开始日期
+     * @param end        结束日期
+     * @param withOrders 是否统计营业额和订单数
+     * @param withUsers  是否统计新增用户数
+     * @return
+     */
+    private BusinessDaily[] getDailyData(LocalDate begin, LocalDate end, boolean withOrders, boolean withUsers) {
+        int days = (int) ChronoUnit.DAYS.between(begin, end) + 1;
+        BusinessDaily[] dailyData = new BusinessDaily[days];
+        for (int i = 0; i < days; i++) {
+            dailyData[i] = BusinessDaily.builder()
+                    .date(begin.plusDays(i))
+                    .turnover(BigDecimal.ZERO)
+                    .orderCount(0)
+                    .validOrderCount(0)
+                    .newUsers(0)
+                    .build();
+        }
+
+        if (rollupService.isEnabled()) {
+            for (BusinessDaily daily : businessDailyMapper.list(begin, end)) {
+                dailyData[(int) ChronoUnit.DAYS.between(begin, daily.getDate())] = daily;
+            }
+            return dailyData;
+        }
+
+        LocalDateTime beginTime = LocalDateTime.of(begin, LocalTime.MIN);
+        LocalDateTime endTime = LocalDateTime.of(end.plusDays(1), LocalTime.MIN);
+        if (withOrders) {
+            for (Map<String, Object> r : orderMapper.getOrderStatisticsGroupByDay(beginTime, endTime)) {
+                BusinessDaily daily = dailyData[getDayIndex(begin, r)];
+                daily.setTurnover((BigDecimal) r.get("turnover"));
+                daily.setOrderCount(((Number) r.get("order_count")).intValue());
+                daily.setValidOrderCount(((Number) r.get("valid_order_count")).intValue());
+            }
+        }
+        if (withUsers) {
+            for (Map<String, Object> r : userMapper.getNewUserCountGroupByDay(beginTime, endTime)) {
+                dailyData[getDayIndex(begin, r)].setNewUsers(((Number) r.get("new_user_count")).intValue());
+            }
+        }
+        return dailyData;
+    }
+
+    /**
+     * 计算分组查询结果中的日期相对开始日期的下标
+     *
+     * @param begin 开始日期
+     * @param row   包含 date 列的查询结果
+     * @return 下标
+     */
+    private int getDayIndex(LocalDate begin, Map<String, Object> row) {
+        return (int) ChronoUnit.DAYS.between(begin, ((java.sql.Date) row.get("date")).toLocalDate());
+    }
+
     private List<LocalDate> getLocalDates(LocalDate begin, LocalDate end) {
         List<LocalDate> dateList = new ArrayList<>();
         dateList.add(begin);
@@ -0,0 +1,97 @@
+package com.sky.service.impl;
+
+import com.sky.entity.Orders;
+import com.sky.event.OrderEvent;
+import com.sky.event.OrderEventListener;
+import com.sky.event.OrderEventType;
+import com.sky.mapper.BusinessDailyMapper;
+import com.sky.mapper.DishSalesDailyMapper;
+import com.sky.service.RollupService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Resource;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 营业数据日汇总：订单事件和用户注册后按原始数据重新统计受影响的日期，每晚由定时任务整体校正。
+ * 重新统计而不是累加，重复或重新投递的事件不会重复计数；订单的统计在事务提交后由订单事件异步执行，
+ * 下单事务不会在当天汇总行上排队等锁
+ */
+@Service
+@Slf4j
+public class RollupServiceImpl implements RollupService, OrderEventListener {
+
+    @Value("${sky.report.rollup-enabled:false}")
+    private boolean enabled;
+
+    @Resource
+    private BusinessDailyMapper businessDailyMapper;
+
+    @Resource
+    private DishSalesDailyMapper dishSalesDailyMapper;
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void onOrderEvent(OrderEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (event.getType() == OrderEventType.SUBMIT) {
+            LocalDateTime begin = LocalDateTime.of(event.getOrders().getOrderTime().toLocalDate(), LocalTime.MIN);
+            businessDailyMapper.refreshOrders(begin, begin.plusDays(1));
+        } else if (event.getType() == OrderEventType.COMPLETE) {
+            onOrderCompleted(event.getOrdersList());
+        }
+    }
+
+    /**
+     * 订单完成后重新统计下单当天的营业数据和商品销量
+     *
+     * @param ordersList
+     */
+    private void onOrderCompleted(List<Orders> ordersList) {
+        // 与报表口径一致，完成的订单计入下单当天
+        Set<LocalDate> dates = ordersList.stream().map(orders -> orders.getOrderTime().toLocalDate()).collect(Collectors.toSet());
+        for (LocalDate date : dates) {
+            LocalDateTime begin = LocalDateTime.of(date, LocalTime.MIN);
+            LocalDateTime end = begin.plusDays(1);
+            businessDailyMapper.refreshOrders(begin, end);
+            dishSalesDailyMapper.refresh(begin, end);
+        }
+    }
+
+    @Override
+    public void onUserRegistered(LocalDate date) {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime begin = LocalDateTime.of(date, LocalTime.MIN);
+        businessDailyMapper.refreshNewUsers(begin, begin.plusDays(1));
+    }
+
+    @Override
+    @Transactional
+    public void reconcile(LocalDate begin, LocalDate end) {
+        LocalDateTime beginTime = LocalDateTime.of(begin, LocalTime.MIN);
+        LocalDateTime endTime = LocalDateTime.of(end.plusDays(1), LocalTime.MIN);
+        log.info("重建营业数据日汇总：{} - {}", begin, end);
+
+        businessDailyMapper.deleteByDate(beginTime, endTime);
+        businessDailyMapper.rebuild(beginTime, endTime);
+
+        dishSalesDailyMapper.deleteByDate(beginTime, endTime);
+        dishSalesDailyMapper.rebuild(beginTime, endTime);
+    }
+}
@@ -2,8 +2,8 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.SetmealCache;
 import com.sky.constant.MessageConstant;
-import com.sky.constant.RedisConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.SetmealDTO;
 import com.sky.dto.SetmealPageQueryDTO;
@@ -20,13 +20,11 @@ import com.sky.service.SetmealService;
 import com.sky.vo.DishItemVO;
 import com.sky.vo.SetmealVO;
 import org.springframework.beans.BeanUtils;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -43,7 +41,7 @@ public class SetmealServiceImpl implements SetmealService {
     private SetmealDishMapper setmealDishMapper;
 
     @Resource
-    private StringRedisTemplate stringRedisTemplate;
+    private SetmealCache setmealCache;
 
     @Override
     public void save(SetmealDTO setmealDTO) {
@@ -53,14 +51,13 @@ public class SetmealServiceImpl implements SetmealService {
     /**
      * 保存套餐及其菜品信息，并清除对应的缓存。
      * 使用@Transactional注解确保该操作为一个事务，保证数据的一致性。
-     * 使用@CacheEvict注解在保存套餐信息后，清除Redis中对应的套餐缓存，以保证缓存数据的实时性。
+     * 保存套餐信息后，在事务提交时清除Redis中对应的套餐缓存，以保证缓存数据的实时性。
      *
      * @param setmealDTO 套餐信息的数据传输对象，包含套餐的基本信息和关联的菜品信息。
      *                   DTO用于在不同层之间传递数据。
      */
     @Override
     @Transactional
-    @CacheEvict(cacheNames = RedisConstant.SETMEAL_CACHE_KEY, key = "#setmealDTO.categoryId")
     public void saveWithDish(SetmealDTO setmealDTO) {
         // 创建一个新的套餐实体对象
         Setmeal setmeal = new Setmeal();
@@ -75,6 +72,8 @@ public class SetmealServiceImpl implements SetmealService {
         setmealDishes.forEach(setmealDish -> setmealDish.setSetmealId(setmeal.getId()));
         // 批量插入套餐关联的菜品信息到数据库
         setmealDishMapper.insertBatch(setmealDishes);
+        // 清除该分类的套餐缓存
+        setmealCache.evict(Collections.singletonList(setmealDTO.getCategoryId()));
     }
 
 
@@ -100,7 +99,6 @@ public class SetmealServiceImpl implements SetmealService {
      */
     @Override
     @Transactional
-    @CacheEvict(cacheNames = RedisConstant.SETMEAL_CACHE_KEY, allEntries = true)
     public void deleteBatch(List<Long> ids) {
         // 根据ID列表查询套餐信息
         List<Setmeal> setmealList = setmealMapper.getByIds(ids);
@@ -117,6 +115,8 @@ public class SetmealServiceImpl implements SetmealService {
         setmealMapper.deleteByIds(ids);
         // 删除与套餐相关的菜式信息
         setmealDishMapper.deleteBySetmealIds(ids);
+        // 清除被删除套餐所属分类的缓存
+        setmealCache.evict(setmealList.stream().map(Setmeal::getCategoryId).collect(Collectors.toList()));
     }
 
 
@@ -158,17 +158,21 @@ public class SetmealServiceImpl implements SetmealService {
      */
     @Override
     @Transactional
-    @CacheEvict(cacheNames = RedisConstant.SETMEAL_CACHE_KEY, key = "#setmealDTO.categoryId")
     public void update(SetmealDTO setmealDTO) {
         // 创建一个新的Setmeal实例，并从DTO复制属性
         Setmeal setmeal = new Setmeal();
         BeanUtils.copyProperties(setmealDTO, setmeal);
 
+        // 修改前后的分类都需要清除缓存
+        List<Long> categoryIds = new ArrayList<>(getCategoryIds(setmealDTO.getId()));
+        categoryIds.add(setmealDTO.getCategoryId());
+
         // 更新数据库中的套餐信息
         setmealMapper.update(setmeal);
 
         // 删除该套餐之前的菜品信息，为更新做准备
         setmealDishMapper.deleteBySetmealIds(Collections.singletonList(setmealDTO.getId()));
+        setmealCache.evict(categoryIds);
 
         // 如果更新后的套餐包含菜品信息，则进行插入操作
         List<SetmealDish> setmealDishes = setmealDTO.getSetmealDishes();
@@ -182,13 +186,23 @@ public class SetmealServiceImpl implements SetmealService {
     }
 
 
-    @Cacheable(cacheNames = RedisConstant.SETMEAL_CACHE_KEY, key = "#categoryId")
+    /**
+     * 根据分类id查询起售中的套餐。
+     * <p>
+     * 读取通过 {@link SetmealCache} 完成，缓存失效后只有一个请求查询数据库。
+     *
+     * @param categoryId 分类id
+     * @return 套餐列表
+     */
+    @Override
     public List<Setmeal> listById(Long categoryId) {
-        Setmeal setmeal = Setmeal.builder()
-                .categoryId(categoryId)
-                .status(StatusConstant.ENABLE)
-                .build();
-        return setmealMapper.list(setmeal);
+        return setmealCache.get(categoryId, () -> {
+            Setmeal setmeal = Setmeal.builder()
+                    .categoryId(categoryId)
+                    .status(StatusConstant.ENABLE)
+                    .build();
+            return setmealMapper.list(setmeal);
+        });
     }
 
     /**
@@ -214,7 +228,6 @@ public class SetmealServiceImpl implements SetmealService {
      * @param status 要更新到的新状态，不可为null。
      */
     @Override
-    @CacheEvict(cacheNames = RedisConstant.SETMEAL_CACHE_KEY, allEntries = true)
     public void updateStatus(Long id, Integer status) {
         // 当套餐状态更新为启用时，进行特别检查
         if (status.equals(StatusConstant.ENABLE)) {
@@ -238,6 +251,20 @@ public class SetmealServiceImpl implements SetmealService {
                 .build();
         // 执行套餐状态的数据库更新操作
         setmealMapper.update(setmeal);
+        // 清除套餐所属分类的缓存
+        setmealCache.evict(getCategoryIds(id));
+    }
+
+    /**
+     * 查询套餐所属的分类id
+     *
+     * @param id 套餐id
+     * @return 分类id列表，套餐不存在时为空列表
+     */
+    private List<Long> getCategoryIds(Long id) {
+        return setmealMapper.getByIds(Collections.singletonList(id)).stream()
+                .map(Setmeal::getCategoryId)
+                .collect(Collectors.toList());
     }
 
 
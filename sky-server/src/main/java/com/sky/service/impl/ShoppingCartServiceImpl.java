@@ -1,5 +1,7 @@
 package com.sky.service.impl;
 
+import com.sky.cache.CacheClient;
+import com.sky.cache.ShoppingCartCache;
 import com.sky.context.BaseContext;
 import com.sky.dto.ShoppingCartDTO;
 import com.sky.entity.Dish;
@@ -10,6 +12,7 @@ import com.sky.mapper.SetmealMapper;
 import com.sky.mapper.ShoppingCartMapper;
 import com.sky.service.ShoppingCartService;
 import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
@@ -21,20 +24,28 @@ import java.util.stream.Collectors;
 @Service
 public class ShoppingCartServiceImpl implements ShoppingCartService {
 
+    /**
+     * 是否使用 Redis 保存购物车，关闭时直接读写 shopping_cart 表
+     */
+    @Value("${sky.shopping-cart.redis-enabled:false}")
+    private boolean redisEnabled;
+
     @Resource
     private ShoppingCartMapper shoppingCartMapper;
     @Resource
     private DishMapper dishMapper;
     @Resource
     private SetmealMapper setmealMapper;
+    @Resource
+    private ShoppingCartCache shoppingCartCache;
 
     /**
      * 添加商品到购物车。
      *
      * @param shoppingCartDTO 购物车DTO对象，包含商品相关信息。
-     *                        该方法首先尝试根据传入的购物车DTO对象查找已存在的购物车项。
-     *                        如果存在，则数量加1并更新到数据库。
-     *                        如果不存在，则根据商品类型（菜品或套餐）获取商品信息，并创建新购物车项添加到数据库。
+     *                        该方法首先尝试将已存在的购物车项数量加1。
+     *                        如果不存在，则根据商品类型（菜品或套餐）获取商品信息，并通过 upsert 新增购物车项，
+     *                        并发添加同一商品时由唯一索引合并为数量累加，无需加锁。
      */
     @Override
     public void addShoppingCart(ShoppingCartDTO shoppingCartDTO) {
@@ -45,55 +56,75 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
         BeanUtils.copyProperties(shoppingCartDTO, shoppingCart);
         // 设置用户ID
         shoppingCart.setUserId(BaseContext.getCurrentId());
-        // 根据购物车信息查询已存在的购物车列表
 
-        // TODO Add Lock
-        List<ShoppingCart> list = shoppingCartMapper.list(shoppingCart);
+        // Redis 购物车：已有该商品时数量通过 HINCRBY 原子增加，首次加入时查询商品信息后与数量一起写入
+        if (redisEnabled) {
+            String field = ShoppingCartCache.field(shoppingCart.getDishId(), shoppingCart.getSetmealId(), shoppingCart.getDishFlavor());
+            if (shoppingCartCache.increment(shoppingCart.getUserId(), field, 1) > 0) {
+                return;
+            }
+            if (fillItemInfo(shoppingCart)) {
+                shoppingCartCache.add(shoppingCart.getUserId(), field, 1, shoppingCart);
+            }
+            return;
+        }
 
-        // 如果已存在购物车项，则数量加1并更新
-        if (list != null && !list.isEmpty()) {
-            ShoppingCart cart = list.get(0);
-            cart.setNumber(cart.getNumber() + 1);
-            shoppingCartMapper.updateNumberById(cart);
+        // 已存在购物车项，则数量加1
+        if (shoppingCartMapper.incrementNumber(shoppingCart) > 0) {
             return;
         }
+        // 查询商品信息，商品不存在则直接返回
+        if (!fillItemInfo(shoppingCart)) {
+            return;
+        }
+        // 设置购物车项的数量为1，并发添加时由唯一索引合并为数量累加
+        shoppingCart.setNumber(1);
+        shoppingCartMapper.upsert(shoppingCart);
+    }
+
+    /**
+     * 根据商品类型（菜品或套餐）查询商品信息，并设置购物车项的名称、图片和价格。
+     *
+     * @param shoppingCart 购物车项
+     * @return 商品是否存在
+     */
+    private boolean fillItemInfo(ShoppingCart shoppingCart) {
         // 根据商品类型分别处理菜品和套餐
-        Long dishId = shoppingCartDTO.getDishId();
+        Long dishId = shoppingCart.getDishId();
         if (dishId != null) {
             // 查询菜品信息
             List<Dish> dishes = dishMapper.getByIds(Collections.singletonList(dishId));
             // 如果菜品不存在，则直接返回
             if (dishes == null || dishes.isEmpty()) {
-                return;
+                return false;
             }
             // 设置购物车项的菜品名称、图片和价格
             shoppingCart.setName(dishes.get(0).getName());
             shoppingCart.setImage(dishes.get(0).getImage());
             shoppingCart.setAmount(dishes.get(0).getPrice());
         } else {
-            Long setmealId = shoppingCartDTO.getSetmealId();
+            Long setmealId = shoppingCart.getSetmealId();
             // 查询套餐信息
             List<Setmeal> setmealList = setmealMapper.getByIds(Collections.singletonList(setmealId));
             // 如果套餐不存在，则直接返回
             if (setmealList == null || setmealList.isEmpty()) {
-                return;
+                return false;
             }
             // 设置购物车项的套餐名称、图片和价格
             shoppingCart.setName(setmealList.get(0).getName());
             shoppingCart.setImage(setmealList.get(0).getImage());
             shoppingCart.setAmount(setmealList.get(0).getPrice());
         }
-        // 设置购物车项的数量为1
-        shoppingCart.setNumber(1);
-        // 设置购物车项的创建时间
         shoppingCart.setCreateTime(LocalDateTime.now());
-        // 新增购物车项到数据库
-        shoppingCartMapper.insert(shoppingCart);
+        return true;
     }
 
     @Override
     public List<ShoppingCart> list() {
         Long userId = BaseContext.getCurrentId();
+        if (redisEnabled) {
+            return shoppingCartCache.list(userId);
+        }
         ShoppingCart shoppingCart = ShoppingCart.builder()
                 .userId(userId)
                 .build();
@@ -103,10 +134,9 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
     /**
      * 减少购物车中商品的数量。
      * 该方法首先根据传入的购物车DTO对象创建一个购物车实体对象，并设置用户ID。
-     * 然后，根据这个购物车实体对象查询数据库中对应的购物车记录。
-     * 如果查询结果存在且不为空，将查询到的购物车商品数量减一。
-     * 如果减一后商品数量仍大于0，则更新数据库中该购物车商品的数量。
-     * 如果减一后商品数量等于0，则删除该购物车商品的记录。
+     * 然后，以条件更新的方式在商品数量大于1时将数量减一。
+     * 如果商品数量不大于1，则删除该购物车商品的记录。
+     * 每次修改都只有一条语句，无需先查询再更新。
      *
      * @param shoppingCartDTO 购物车DTO对象，包含购物车的相关信息。
      */
@@ -118,27 +148,30 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
         // 设置用户ID
         shoppingCart.setUserId(BaseContext.getCurrentId());
 
-        // 根据购物车信息查询数据库中的购物车列表
-        List<ShoppingCart> list = shoppingCartMapper.list(shoppingCart);
-        // 如果查询结果为空，则直接返回
-        if (list == null || list.isEmpty()) {
+        // Redis 购物车：数量减一与删除在脚本中原子完成
+        if (redisEnabled) {
+            shoppingCartCache.decrement(shoppingCart.getUserId(),
+                    ShoppingCartCache.field(shoppingCart.getDishId(), shoppingCart.getSetmealId(), shoppingCart.getDishFlavor()));
             return;
         }
-        // 获取列表中的第一个购物车对象
-        ShoppingCart cart = list.get(0);
-        // 将购物车商品数量减一
-        cart.setNumber(cart.getNumber() - 1);
-        // 如果减一后商品数量大于0，则更新数据库中的商品数量
-        if (cart.getNumber() > 0) {
-            shoppingCartMapper.updateNumberById(cart);
-        } else {
-            // 如果减一后商品数量等于0，则删除该购物车商品记录
-            shoppingCartMapper.deleteByIds(Collections.singletonList(cart.getId()));
+
+        // 数量大于1时减一，否则删除该购物车项；两条语句都未命中说明购物车中没有该商品
+        if (shoppingCartMapper.decrementNumber(shoppingCart) == 0) {
+            shoppingCartMapper.deleteLastOne(shoppingCart);
         }
     }
 
+    /**
+     * 清空当前用户的购物车。
+     * 购物车保存在 Redis 中时推迟到事务提交后清空，下单事务回滚时购物车保持不变。
+     */
     @Override
     public void cleanShoppingCart() {
+        if (redisEnabled) {
+            Long userId = BaseContext.getCurrentId();
+            CacheClient.afterCommit(() -> shoppingCartCache.clean(userId));
+            return;
+        }
         ShoppingCart shoppingCart = ShoppingCart.builder()
                 .userId(BaseContext.getCurrentId())
                 .build();
@@ -149,4 +182,24 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
         List<Long> ids = list.stream().map(ShoppingCart::getId).collect(Collectors.toList());
         shoppingCartMapper.deleteByIds(ids);
     }
+
+    /**
+     * 批量添加商品到当前用户的购物车（再来一单）。
+     *
+     * @param shoppingCartList 购物车项列表，需包含商品名称、图片、价格和数量。
+     */
+    @Override
+    public void addBatch(List<ShoppingCart> shoppingCartList) {
+        if (shoppingCartList == null || shoppingCartList.isEmpty()) {
+            return;
+        }
+        if (redisEnabled) {
+            shoppingCartList.forEach(cart -> {
+                String field = ShoppingCartCache.field(cart.getDishId(), cart.getSetmealId(), cart.getDishFlavor());
+                shoppingCartCache.add(cart.getUserId(), field, cart.getNumber(), cart);
+            });
+            return;
+        }
+        shoppingCartMapper.insertBatch(shoppingCartList);
+    }
 }
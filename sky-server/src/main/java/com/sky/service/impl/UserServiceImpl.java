@@ -8,6 +8,7 @@ import com.sky.entity.User;
 import com.sky.exception.LoginFailedException;
 import com.sky.mapper.UserMapper;
 import com.sky.properties.WeChatProperties;
+import com.sky.service.RollupService;
 import com.sky.service.UserService;
 import com.sky.utils.HttpClientUtil;
 import org.springframework.stereotype.Service;
@@ -28,6 +29,9 @@ public class UserServiceImpl implements UserService {
     @Resource
     private UserMapper userMapper;
 
+    @Resource
+    private RollupService rollupService;
+
     @Override
     public User wechatLogin(UserLoginDTO userLoginDTO) {
         // get open id
@@ -48,6 +52,7 @@ public class UserServiceImpl implements UserService {
                     .createTime(LocalDateTime.now())
                     .build();
             userMapper.insert(user);
+            rollupService.onUserRegistered(user.getCreateTime().toLocalDate());
         }
         return user;
     }
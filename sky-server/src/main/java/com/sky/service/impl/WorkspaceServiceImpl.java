@@ -1,11 +1,15 @@
 package com.sky.service.impl;
 
-import com.sky.constant.StatusConstant;
-import com.sky.entity.Orders;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.cache.OrderStatusCounter;
+import com.sky.entity.BusinessDaily;
+import com.sky.mapper.BusinessDailyMapper;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.OrderMapper;
 import com.sky.mapper.SetmealMapper;
 import com.sky.mapper.UserMapper;
+import com.sky.service.RollupService;
 import com.sky.service.WorkspaceService;
 import com.sky.vo.BusinessDataVO;
 import com.sky.vo.DishOverViewVO;
@@ -13,12 +17,16 @@ import com.sky.vo.OrderOverViewVO;
 import com.sky.vo.SetmealOverViewVO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 @Service
 @Slf4j
@@ -32,6 +40,25 @@ public class WorkspaceServiceImpl implements WorkspaceService {
     private DishMapper dishMapper;
     @Autowired
     private SetmealMapper setmealMapper;
+    @Autowired
+    private BusinessDailyMapper businessDailyMapper;
+    @Autowired
+    private RollupService rollupService;
+    @Autowired
+    private OrderStatusCounter orderStatusCounter;
+
+    @Value("${sky.workspace.cache-ttl-seconds:10}")
+    private long cacheTtlSeconds;
+
+    private Cache<String, Object> dashboardCache;
+
+    @PostConstruct
+    public void init() {
+        dashboardCache = Caffeine.newBuilder()
+                .maximumSize(64)
+                .expireAfterWrite(cacheTtlSeconds, TimeUnit.SECONDS)
+                .build();
+    }
 
     /**
      * 根据时间段统计营业数据
@@ -41,28 +68,34 @@ public class WorkspaceServiceImpl implements WorkspaceService {
      * @return
      */
     public BusinessDataVO getBusinessData(LocalDateTime begin, LocalDateTime end) {
-        /**
-         * 营业额：当日已完成订单的总金额
-         * 有效订单：当日已完成订单的数量
-         * 订单完成率：有效订单数 / 总订单数
-         * 平均客单价：营业额 / 有效订单数
-         * 新增用户：当日新增用户的数量
-         */
-
-        Map<String, Object> map = new HashMap<>();
-        map.put("begin", begin);
-        map.put("end", end);
-
-        //查询总订单数
-        Integer totalOrderCount = orderMapper.countByMap(map);
-
-        map.put("status", Orders.COMPLETED);
-        //营业额
-        Double turnover = orderMapper.sumByMap(map);
-        turnover = turnover == null ? 0.0 : turnover;
+        return getCached("business:" + begin + ":" + end, () -> {
+            /**
+             * 营业额：当日已完成订单的总金额
+             * 有效订单：当日已完成订单的数量
+             * 订单完成率：有效订单数 / 总订单数
+             * 平均客单价：营业额 / 有效订单数
+             * 新增用户：当日新增用户的数量
+             */
+
+            // 按整天统计时直接读取日汇总
+            if (rollupService.isEnabled() && isWholeDays(begin, end)) {
+                return buildBusinessData(businessDailyMapper.sum(begin.toLocalDate(), end.toLocalDate()));
+            }
+
+            // 订单表和用户表各查询一次
+            BusinessDaily daily = orderMapper.sumBusinessData(begin, end);
+            Map<String, Object> map = new HashMap<>();
+            map.put("begin", begin);
+            map.put("end", end);
+            daily.setNewUsers(userMapper.countByMap(map));
+            return buildBusinessData(daily);
+        });
+    }
 
-        //有效订单数
-        Integer validOrderCount = orderMapper.countByMap(map);
+    private BusinessDataVO buildBusinessData(BusinessDaily daily) {
+        double turnover = daily.getTurnover().doubleValue();
+        Integer totalOrderCount = daily.getOrderCount();
+        Integer validOrderCount = daily.getValidOrderCount();
 
         double unitPrice = 0.0;
 
@@ -74,18 +107,21 @@ public class WorkspaceServiceImpl implements WorkspaceService {
             unitPrice = turnover / validOrderCount;
         }
 
-        //新增用户数
-        Integer newUsers = userMapper.countByMap(map);
-
         return BusinessDataVO.builder()
                 .turnover(turnover)
                 .validOrderCount(validOrderCount)
                 .orderCompletionRate(orderCompletionRate)
                 .unitPrice(unitPrice)
-                .newUsers(newUsers)
+                .newUsers(daily.getNewUsers())
                 .build();
     }
 
+    /**
+     * 时间段是否由完整的若干天组成
+     */
+    private boolean isWholeDays(LocalDateTime begin, LocalDateTime end) {
+        return begin.toLocalTime().equals(LocalTime.MIN) && end.toLocalTime().equals(LocalTime.MAX);
+    }
 
     /**
      * 查询订单管理数据
@@ -93,36 +129,10 @@ public class WorkspaceServiceImpl implements WorkspaceService {
      * @return
      */
     public OrderOverViewVO getOrderOverView() {
-        Map map = new HashMap();
-        map.put("begin", LocalDateTime.now().with(LocalTime.MIN));
-        map.put("status", Orders.TO_BE_CONFIRMED);
-
-        //待接单
-        Integer waitingOrders = orderMapper.countByMap(map);
-
-        //待派送
-        map.put("status", Orders.CONFIRMED);
-        Integer deliveredOrders = orderMapper.countByMap(map);
-
-        //已完成
-        map.put("status", Orders.COMPLETED);
-        Integer completedOrders = orderMapper.countByMap(map);
-
-        //已取消
-        map.put("status", Orders.CANCELLED);
-        Integer cancelledOrders = orderMapper.countByMap(map);
-
-        //全部订单
-        map.put("status", null);
-        Integer allOrders = orderMapper.countByMap(map);
-
-        return OrderOverViewVO.builder()
-                .waitingOrders(waitingOrders)
-                .deliveredOrders(deliveredOrders)
-                .completedOrders(completedOrders)
-                .cancelledOrders(cancelledOrders)
-                .allOrders(allOrders)
-                .build();
+        if (orderStatusCounter.isEnabled()) {
+            return orderStatusCounter.getTodayOverView();
+        }
+        return getCached("orders", () -> orderMapper.getOverView(LocalDateTime.now().with(LocalTime.MIN)));
     }
 
     /**
@@ -131,17 +141,7 @@ public class WorkspaceServiceImpl implements WorkspaceService {
      * @return
      */
     public DishOverViewVO getDishOverView() {
-        Map<String, Object> map = new HashMap<>();
-        map.put("status", StatusConstant.ENABLE);
-        Integer sold = dishMapper.countByMap(map);
-
-        map.put("status", StatusConstant.DISABLE);
-        Integer discontinued = dishMapper.countByMap(map);
-
-        return DishOverViewVO.builder()
-                .sold(sold)
-                .discontinued(discontinued)
-                .build();
+        return getCached("dishes", () -> dishMapper.getOverView());
     }
 
     /**
@@ -150,16 +150,14 @@ public class WorkspaceServiceImpl implements WorkspaceService {
      * @return
      */
     public SetmealOverViewVO getSetmealOverView() {
-        Map<String, Object> map = new HashMap<>();
-        map.put("status", StatusConstant.ENABLE);
-        Integer sold = setmealMapper.countByMap(map);
-
-        map.put("status", StatusConstant.DISABLE);
-        Integer discontinued = setmealMapper.countByMap(map);
+        return getCached("setmeals", () -> setmealMapper.getOverView());
+    }
 
-        return SetmealOverViewVO.builder()
-                .sold(sold)
-                .discontinued(discontinued)
-                .build();
+    /**
+     * 工作台数据在短时间内直接复用，避免每次刷新都查询数据库
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T getCached(String key, Supplier<T> loader) {
+        return (T) dashboardCache.get(key, k -> loader.get());
     }
 }
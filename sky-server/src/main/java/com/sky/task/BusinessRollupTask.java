@@ -0,0 +1,40 @@
+package com.sky.task;
+
+import com.sky.service.RollupService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+@Component
+@Slf4j
+public class BusinessRollupTask {
+
+    @Value("${sky.report.rollup-reconcile-days:7}")
+    private int reconcileDays;
+
+    @Resource
+    private RollupService rollupService;
+
+    @Resource
+    private TaskCoordinator taskCoordinator;
+
+    /**
+     * 每天凌晨按订单表和用户表重建最近几天的日汇总，校正事件监听器处理失败或事件丢失（如节点宕机时未分发的事件）未能统计的数据
+     */
+    @Scheduled(cron = "0 30 1 * * ?")
+    public void reconcile() {
+        if (!rollupService.isEnabled()) {
+            return;
+        }
+        taskCoordinator.runExclusively("reconcileBusinessRollup", TimeUnit.MINUTES.toMillis(30), TimeUnit.MINUTES.toMillis(1), () -> {
+            log.info("reconcileBusinessRollup");
+            LocalDate yesterday = LocalDate.now().minusDays(1);
+            rollupService.reconcile(yesterday.minusDays(reconcileDays - 1), yesterday);
+        });
+    }
+}
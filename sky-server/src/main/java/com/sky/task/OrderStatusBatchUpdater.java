@@ -0,0 +1,55 @@
+package com.sky.task;
+
+import com.sky.entity.Orders;
+import com.sky.event.OrderEvent;
+import com.sky.event.OrderEventPublisher;
+import com.sky.event.OrderEventType;
+import com.sky.mapper.OrderMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Resource;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 定时任务批量修改订单状态
+ * <p>
+ * 先锁定仍处于原状态的订单再修改，锁定的订单在事务提交前不会被其他请求修改，
+ * 发布的事件只包含实际修改的订单，计数等订阅者不会把同时被其他请求修改的订单重复计算。
+ */
+@Component
+public class OrderStatusBatchUpdater {
+
+    @Resource
+    private OrderMapper orderMapper;
+
+    @Resource
+    private OrderEventPublisher orderEventPublisher;
+
+    /**
+     * 把仍处于原状态的订单改为新状态，事务提交后发布事件
+     *
+     * @param idList       订单id
+     * @param status       订单当前应处的状态
+     * @param eventType    发布的订单事件类型
+     * @param newStatus    新状态
+     * @param cancelReason 取消原因，不是取消时为null
+     * @return 实际修改的订单（修改前）
+     */
+    @Transactional
+    public List<Orders> updateStatus(List<Long> idList, Integer status, OrderEventType eventType,
+                                     Integer newStatus, String cancelReason) {
+        List<Orders> ordersList = orderMapper.lockByIdsAndStatus(idList, status);
+        if (ordersList.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> lockedIdList = ordersList.stream().map(Orders::getId).collect(Collectors.toList());
+        orderMapper.updateStatusByIds(lockedIdList, status, newStatus, cancelReason,
+                cancelReason == null ? null : LocalDateTime.now());
+        orderEventPublisher.publish(new OrderEvent(eventType, ordersList, newStatus));
+        return ordersList;
+    }
+}
@@ -1,8 +1,11 @@
 package com.sky.task;
 
+import com.sky.cache.OrderStatusCounter;
 import com.sky.entity.Orders;
+import com.sky.event.OrderEventType;
 import com.sky.mapper.OrderMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
@@ -11,55 +14,109 @@ import javax.annotation.Resource;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Component
 @Slf4j
 public class OrderTask {
 
+    //每批修改的订单数
+    private static final int BATCH_SIZE = 500;
+
+    @Value("${sky.order.pay-timeout-minutes:15}")
+    private long payTimeoutMinutes;
+
     @Resource
     private OrderMapper orderMapper;
 
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
+    @Resource
+    private OrderStatusCounter orderStatusCounter;
+
+    @Resource
+    private OrderStatusBatchUpdater orderStatusBatchUpdater;
 
-    @Scheduled(cron = "0 * * * * ? ")
+    @Resource
+    private TaskCoordinator taskCoordinator;
+
+
+    /**
+     * 超时订单由 {@link OrderTimeoutQueue} 到期取消，这里每小时兜底一次，处理未能入队或出队后未取消的订单
+     */
+    @Scheduled(cron = "0 0 * * * ? ")
     public void processTimeOutOrder() {
         log.info("processTimeOutOrder");
-        List<Orders> ordersList = orderMapper.getByStatusAndOrderTimeLT(
-                Orders.PENDING_PAYMENT,
-                LocalDateTime.now().plusMinutes(-15));
-
-        if (ordersList == null || ordersList.isEmpty()) {
-            return;
-        }
-        List<Long> idList = ordersList.stream().map(Orders::getId).collect(Collectors.toList());
-        orderMapper.cancelOrderById(idList, Orders.CANCELLED, "订单超时", LocalDateTime.now());
+        updateStatusInBatches("processTimeOutOrder", Orders.PENDING_PAYMENT,
+                LocalDateTime.now().plusMinutes(-payTimeoutMinutes), OrderEventType.CANCEL, Orders.CANCELLED, "订单超时");
     }
 
+    /**
+     * 每天凌晨把前一天仍在派送中的订单置为已完成
+     */
     @Scheduled(cron = "0 0 1 * * ?")
     public void processDeliveryOrder() {
         log.info("processDeliveryOrder");
-        List<Orders> ordersList = orderMapper.getByStatusAndOrderTimeLT(
-                Orders.PENDING_PAYMENT,
-                LocalDateTime.now().plusHours(-1));
+        updateStatusInBatches("processDeliveryOrder", Orders.DELIVERY_IN_PROGRESS,
+                LocalDateTime.now().plusHours(-1), OrderEventType.COMPLETE, Orders.COMPLETED, null);
+    }
 
-        if (ordersList == null || ordersList.isEmpty()) {
-            return;
-        }
+    /**
+     * 按id分页扫描指定状态的订单并分批修改状态，每批只修改仍处于原状态的订单，重复执行不会产生影响。
+     * 多节点部署时每个节点只扫描自己的分片
+     *
+     * @param task         任务名称，用于日志
+     * @param status       订单当前状态
+     * @param orderTimeLT  下单时间早于该时间的订单
+     * @param eventType    修改后发布的订单事件类型
+     * @param newStatus    新状态
+     * @param cancelReason 取消原因，不是取消时为null
+     */
+    private void updateStatusInBatches(String task, Integer status, LocalDateTime orderTimeLT,
+                                       OrderEventType eventType, Integer newStatus, String cancelReason) {
+        long start = System.currentTimeMillis();
+        TaskCoordinator.Shard shard = taskCoordinator.currentShard();
+        int scanned = 0;
+        int updated = 0;
+        int batches = 0;
+        long lastId = 0;
+        List<Orders> ordersList;
+        do {
+            ordersList = orderMapper.getIdsByStatusAndOrderTimeLT(status, orderTimeLT, lastId, BATCH_SIZE,
+                    shard.getIndex(), shard.getCount());
+            if (ordersList.isEmpty()) {
+                break;
+            }
+            lastId = ordersList.get(ordersList.size() - 1).getId();
+            List<Long> idList = ordersList.stream().map(Orders::getId).collect(Collectors.toList());
+            updated += orderStatusBatchUpdater.updateStatus(idList, status, eventType, newStatus, cancelReason).size();
+            scanned += ordersList.size();
+            batches++;
+        } while (ordersList.size() == BATCH_SIZE);
+
+        log.info("{}：分片{}/{}，扫描订单{}个，修改{}个，共{}批，耗时{}ms", task, shard.getIndex(), shard.getCount(),
+                scanned, updated, batches, System.currentTimeMillis() - start);
+    }
 
-        List<Long> idList = ordersList.stream().map(Orders::getId).collect(Collectors.toList());
-        orderMapper.cancelOrderById(idList, Orders.COMPLETED, null, null);
+    @Scheduled(cron = "0 0/5 * * * ? ")
+    public void reconcileOrderStatusCounter() {
+        taskCoordinator.runExclusively("reconcileOrderStatusCounter", TimeUnit.MINUTES.toMillis(4), TimeUnit.SECONDS.toMillis(30), () -> {
+            log.info("reconcileOrderStatusCounter");
+            orderStatusCounter.reconcile();
+        });
     }
 
     @Scheduled(cron = "0 0/30 * * * ? ")
     public void deleteStatisticsCache() {
-        log.info("deleteStatisticsCache");
-        Set<String> keys = stringRedisTemplate.keys("statistics*");
-        if (keys == null || keys.isEmpty()) {
-            return;
-        }
-        stringRedisTemplate.delete(keys);
+        taskCoordinator.runExclusively("deleteStatisticsCache", TimeUnit.MINUTES.toMillis(10), TimeUnit.MINUTES.toMillis(1), () -> {
+            log.info("deleteStatisticsCache");
+            Set<String> keys = stringRedisTemplate.keys("statistics*");
+            if (keys == null || keys.isEmpty()) {
+                return;
+            }
+            stringRedisTemplate.delete(keys);
+        });
     }
 }
@@ -0,0 +1,158 @@
+package com.sky.task;
+
+import com.sky.constant.RedisConstant;
+import com.sky.entity.Orders;
+import com.sky.event.OrderEvent;
+import com.sky.event.OrderEventListener;
+import com.sky.event.OrderEventType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 待付款订单的超时延迟队列
+ * <p>
+ * 下单后把订单id放入 Redis 有序集合 order:pay:timeout，score 为付款截止时间的毫秒数；
+ * 独立线程每秒取出已到期的订单，只取消仍处于待付款状态的订单，不受其他定时任务耗时影响。
+ * 取出和删除在同一个 Lua 脚本中完成，多个节点不会重复处理；取消失败的订单放回队列稍后重试。
+ * 取出后节点宕机或入队失败的订单由 {@link OrderTask#processTimeOutOrder()} 定时兜底。
+ */
+@Component
+@Slf4j
+public class OrderTimeoutQueue implements OrderEventListener {
+
+    private static final int BATCH_SIZE = 100;
+
+    private static final long POLL_INTERVAL_MILLIS = 1000;
+
+    //取消失败的订单放回队列后等待多久重试
+    private static final long RETRY_DELAY_MILLIS = 5000;
+
+    /**
+     * 取出并删除截止时间不晚于 ARGV[1] 的至多 ARGV[2] 个订单id
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> POLL_SCRIPT = new DefaultRedisScript<>(
+            "local ids = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2]) " +
+                    "if #ids > 0 then redis.call('ZREM', KEYS[1], unpack(ids)) end " +
+                    "return ids", List.class);
+
+    @Value("${sky.order.pay-timeout-minutes:15}")
+    private long payTimeoutMinutes;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private OrderStatusBatchUpdater orderStatusBatchUpdater;
+
+    private ScheduledExecutorService pollExecutor;
+
+    @PostConstruct
+    public void init() {
+        pollExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "order-timeout-poll");
+            thread.setDaemon(true);
+            return thread;
+        });
+        pollExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                poll();
+            } catch (Exception e) {
+                log.error("超时订单处理失败", e);
+            }
+        }, POLL_INTERVAL_MILLIS, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        pollExecutor.shutdown();
+    }
+
+    /**
+     * 下单后把订单放入延迟队列，订单已付款或已取消后移出
+     */
+    @Override
+    public void onOrderEvent(OrderEvent event) {
+        switch (event.getType()) {
+            case SUBMIT:
+                add(event.getOrders());
+                break;
+            case PAY:
+            case REJECT:
+            case CANCEL:
+                Object[] ids = event.getOrdersList().stream().map(orders -> orders.getId().toString()).toArray();
+                stringRedisTemplate.opsForZSet().remove(RedisConstant.ORDER_PAY_TIMEOUT_KEY, ids);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void add(Orders orders) {
+        long deadline = orders.getOrderTime().plusMinutes(payTimeoutMinutes)
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        // 入队失败不影响下单，由定时任务兜底取消
+        stringRedisTemplate.opsForZSet().add(RedisConstant.ORDER_PAY_TIMEOUT_KEY, orders.getId().toString(), deadline);
+    }
+
+    public void poll() {
+        List<Long> idList;
+        do {
+            idList = take();
+            if (!idList.isEmpty()) {
+                cancel(idList);
+            }
+        } while (idList.size() == BATCH_SIZE);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Long> take() {
+        List<String> ids = stringRedisTemplate.execute(POLL_SCRIPT,
+                Collections.singletonList(RedisConstant.ORDER_PAY_TIMEOUT_KEY),
+                String.valueOf(System.currentTimeMillis()), String.valueOf(BATCH_SIZE));
+        if (ids == null || ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return ids.stream().map(Long::valueOf).collect(Collectors.toList());
+    }
+
+    private void cancel(List<Long> idList) {
+        List<Orders> cancelled;
+        try {
+            // 已付款或已取消的订单直接跳过
+            cancelled = orderStatusBatchUpdater.updateStatus(idList, Orders.PENDING_PAYMENT,
+                    OrderEventType.CANCEL, Orders.CANCELLED, "订单超时");
+        } catch (RuntimeException e) {
+            // 已从队列中删除，放回队列稍后重试
+            requeue(idList);
+            throw e;
+        }
+        log.info("取消超时订单：{}", cancelled.size());
+    }
+
+    private void requeue(List<Long> idList) {
+        double retryAt = System.currentTimeMillis() + RETRY_DELAY_MILLIS;
+        Set<ZSetOperations.TypedTuple<String>> tuples = idList.stream()
+                .map(id -> (ZSetOperations.TypedTuple<String>) new DefaultTypedTuple<>(id.toString(), retryAt))
+                .collect(Collectors.toSet());
+        stringRedisTemplate.opsForZSet().add(RedisConstant.ORDER_PAY_TIMEOUT_KEY, tuples);
+    }
+}
@@ -0,0 +1,139 @@
+package com.sky.task;
+
+import com.sky.constant.RedisConstant;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多节点部署时协调定时任务
+ * <p>
+ * 只需要一个节点执行的任务通过 {@link #runExclusively} 抢占 Redis 租约 task:lock:{name}；
+ * 可以拆分的扫描任务通过 {@link #currentShard()} 按订单id取模分片，各节点只处理自己的分片。
+ * 节点每隔几秒在有序集合 task:nodes 中登记心跳，超时未登记的节点视为下线，分片数随存活节点数变化。
+ * 节点上下线的瞬间分片可能重叠或遗漏，任务的修改都带有状态条件，重叠无副作用，遗漏的数据在下次执行时处理。
+ * 心跳在独立的线程上执行，不会因为耗时的定时任务占用调度线程而超时下线。
+ */
+@Component
+@Slf4j
+public class TaskCoordinator {
+
+    private static final long HEARTBEAT_INTERVAL_MILLIS = 10_000;
+    private static final long NODE_EXPIRE_MILLIS = 3 * HEARTBEAT_INTERVAL_MILLIS;
+
+    /**
+     * 释放租约：仍由自己持有时，ARGV[2] 大于0则保留到该毫秒数后过期，否则直接删除
+     */
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) ~= ARGV[1] then return 0 end " +
+                    "if tonumber(ARGV[2]) > 0 then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end " +
+                    "return redis.call('DEL', KEYS[1])", Long.class);
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private ScheduledExecutorService heartbeatExecutor;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 当前节点负责的分片
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Shard {
+        //分片下标，从0开始
+        private final int index;
+        //分片总数
+        private final int count;
+    }
+
+    @PostConstruct
+    public void init() {
+        heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "task-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeatExecutor.scheduleAtFixedRate(() -> {
+            try {
+                heartbeat();
+            } catch (Exception e) {
+                log.error("节点心跳登记失败", e);
+            }
+        }, 0, HEARTBEAT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public void heartbeat() {
+        long now = System.currentTimeMillis();
+        stringRedisTemplate.opsForZSet().add(RedisConstant.TASK_NODES_KEY, nodeId, now);
+        stringRedisTemplate.opsForZSet().removeRangeByScore(RedisConstant.TASK_NODES_KEY, 0, now - NODE_EXPIRE_MILLIS);
+    }
+
+    /**
+     * 按存活节点的排序位置计算当前节点的分片
+     *
+     * @return
+     */
+    public Shard currentShard() {
+        long now = System.currentTimeMillis();
+        Set<String> nodes = stringRedisTemplate.opsForZSet().rangeByScore(RedisConstant.TASK_NODES_KEY,
+                now - NODE_EXPIRE_MILLIS, Double.MAX_VALUE);
+        List<String> nodeList = nodes == null ? new ArrayList<>() : new ArrayList<>(nodes);
+        if (!nodeList.contains(nodeId)) {
+            heartbeat();
+            nodeList.add(nodeId);
+        }
+        Collections.sort(nodeList);
+        return new Shard(nodeList.indexOf(nodeId), nodeList.size());
+    }
+
+    /**
+     * 抢到租约时执行任务，其他节点在租约有效期内跳过该任务
+     *
+     * @param name              任务名称
+     * @param lockAtMostMillis  租约最长持有时间，节点宕机时到期自动释放
+     * @param lockAtLeastMillis 租约最短持有时间，避免各节点时钟略有偏差时任务执行完立即被其他节点再执行一次
+     * @param job               任务
+     * @return 是否执行了任务
+     */
+    public boolean runExclusively(String name, long lockAtMostMillis, long lockAtLeastMillis, Runnable job) {
+        String key = RedisConstant.TASK_LOCK_KEY + name;
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(key, nodeId, lockAtMostMillis, TimeUnit.MILLISECONDS);
+        if (!Boolean.TRUE.equals(locked)) {
+            log.debug("任务{}由其他节点执行", name);
+            return false;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            job.run();
+        } finally {
+            long remaining = lockAtLeastMillis - (System.currentTimeMillis() - start);
+            stringRedisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(key), nodeId,
+                    String.valueOf(Math.max(0, remaining)));
+        }
+        return true;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        heartbeatExecutor.shutdownNow();
+        stringRedisTemplate.opsForZSet().remove(RedisConstant.TASK_NODES_KEY, nodeId);
+    }
+}
@@ -0,0 +1,43 @@
+package com.sky.websocket;
+
+import com.sky.entity.Orders;
+import com.sky.event.OrderEvent;
+import com.sky.event.OrderEventListener;
+import com.sky.event.OrderEventType;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 来单提醒和客户催单，通过WebSocket推送给管理端
+ */
+@Component
+public class OrderNotificationListener implements OrderEventListener {
+
+    //来单提醒
+    private static final int NEW_ORDER = 1;
+    //客户催单
+    private static final int REMINDER = 2;
+
+    @Resource
+    private WebSocketBroadcaster webSocketBroadcaster;
+
+    @Override
+    public void onOrderEvent(OrderEvent event) {
+        if (event.getType() == OrderEventType.PAY) {
+            notify(NEW_ORDER, event.getOrders());
+        } else if (event.getType() == OrderEventType.REMINDER) {
+            notify(REMINDER, event.getOrders());
+        }
+    }
+
+    private void notify(int type, Orders orders) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("type", type);
+        map.put("orderId", orders.getId());
+        map.put("content", "订单号：" + orders.getNumber());
+        webSocketBroadcaster.broadcast(map);
+    }
+}
@@ -0,0 +1,82 @@
+package com.sky.websocket;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.constant.RedisConstant;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多节点部署时的WebSocket群发
+ * <p>
+ * 消息通过 Redis 频道发布，每个节点（包括发布者自己）收到后推送给本节点的客户端。
+ * 每条消息带有唯一的 id 和全局递增的 seq：节点按 id 去重，客户端可根据 seq 是否连续判断是否漏收消息。
+ * 发布前消息保存到 {@link WebSocketReplayBuffer}，供断线重连的客户端补发。Redis 不可用时退化为只推送本节点的客户端。
+ */
+@Component
+@Slf4j
+public class WebSocketBroadcaster {
+
+    //已推送消息的id，用于去重
+    private final Cache<String, Boolean> delivered = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .build();
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private WebSocketServer webSocketServer;
+
+    @Resource
+    private WebSocketReplayBuffer webSocketReplayBuffer;
+
+    /**
+     * 向所有节点的客户端群发消息
+     *
+     * @param message 消息内容，会附加 id 和 seq 字段
+     */
+    public void broadcast(Map<String, Object> message) {
+        Map<String, Object> payload = new HashMap<>(message);
+        payload.put("id", UUID.randomUUID().toString());
+        try {
+            Long seq = stringRedisTemplate.opsForValue().increment(RedisConstant.WEBSOCKET_SEQ_KEY);
+            payload.put("seq", seq);
+            String body = JSON.toJSONString(payload);
+            // 先保存再发布，重连的客户端不会漏掉已发布的消息
+            try {
+                webSocketReplayBuffer.add(seq, body);
+            } catch (Exception e) {
+                log.warn("保存WebSocket补发消息失败：{}", e.getMessage());
+            }
+            stringRedisTemplate.convertAndSend(RedisConstant.WEBSOCKET_BROADCAST_CHANNEL, body);
+        } catch (Exception e) {
+            log.error("发布WebSocket消息失败，只推送本节点客户端", e);
+            onMessage(JSON.toJSONString(payload));
+        }
+    }
+
+    /**
+     * 收到频道消息后推送给本节点的客户端，同一消息只推送一次
+     *
+     * @param body
+     */
+    public void onMessage(String body) {
+        JSONObject message = JSON.parseObject(body);
+        String id = message.getString("id");
+        if (id != null && delivered.asMap().putIfAbsent(id, Boolean.TRUE) != null) {
+            return;
+        }
+        webSocketServer.sendToAllClient(body);
+    }
+}
@@ -0,0 +1,112 @@
+package com.sky.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.websocket.CloseReason;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单个客户端连接的发送队列
+ * <p>
+ * 消息先放入有界队列，再通过异步发送逐条发出，上一条发送完成的回调中发送下一条，调用方不会被慢客户端阻塞。
+ * 队列满时丢弃最早的消息，连续丢弃过多说明客户端已无法跟上，直接关闭连接。
+ */
+@Slf4j
+public class WebSocketClient {
+
+    private final String sid;
+
+    private final Session session;
+
+    private final BlockingQueue<String> queue;
+
+    private final int maxDropped;
+
+    //是否有消息正在发送，同一时间只能有一条异步发送
+    private final AtomicBoolean sending = new AtomicBoolean();
+
+    //自上次发送成功以来丢弃的消息数
+    private final AtomicInteger dropped = new AtomicInteger();
+
+    public WebSocketClient(String sid, Session session, int queueCapacity, int maxDropped) {
+        this.sid = sid;
+        this.session = session;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxDropped = maxDropped;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * 消息加入发送队列，立即返回
+     *
+     * @param message
+     * @return 连接已关闭时返回false
+     */
+    public boolean send(String message) {
+        if (!session.isOpen()) {
+            return false;
+        }
+        while (!queue.offer(message)) {
+            // 队列已满，丢弃最早的消息
+            if (queue.poll() != null && dropped.incrementAndGet() >= maxDropped) {
+                log.warn("客户端{}消息积压过多，关闭连接", sid);
+                close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "too many pending messages"));
+                return false;
+            }
+        }
+        drain();
+        return true;
+    }
+
+    /**
+     * 没有正在发送的消息时发送队首消息
+     */
+    private void drain() {
+        while (sending.compareAndSet(false, true)) {
+            String message = queue.poll();
+            if (message == null) {
+                sending.set(false);
+                // 释放标记后可能有新消息入队，需要再检查一次
+                if (queue.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+            try {
+                session.getAsyncRemote().sendText(message, result -> {
+                    if (result.isOK()) {
+                        dropped.set(0);
+                    } else {
+                        log.warn("向客户端{}发送消息失败", sid, result.getException());
+                    }
+                    sending.set(false);
+                    drain();
+                });
+                return;
+            } catch (Exception e) {
+                // 连接正在关闭时发送会抛出异常，关闭连接并丢弃积压的消息，之后的群发会移除该连接
+                log.warn("向客户端{}发送消息失败：{}", sid, e.getMessage());
+                close(new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION, "send failed"));
+                sending.set(false);
+                return;
+            }
+        }
+    }
+
+    public void close(CloseReason closeReason) {
+        queue.clear();
+        try {
+            session.close(closeReason);
+        } catch (IOException e) {
+            log.warn("关闭客户端{}连接失败", sid, e);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.sky.websocket;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.constant.RedisConstant;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Set;
+
+/**
+ * 最近推送消息的环形缓冲区
+ * <p>
+ * 消息按 seq 保存在 Redis 有序集合 websocket:replay 中，只保留最近 replay-capacity 条，所有节点共用。
+ * 客户端重连时带上最后收到的 seq（/ws/{sid}?lastSeq=N），服务端把之后的消息合并成一条补发消息：
+ * {"type":3,"events":[...],"complete":true}。complete 为 false 表示缓冲区已不包含全部漏收的消息，
+ * 客户端需要重新查询一次订单列表。补发与实时推送可能有少量重复，客户端按 seq 去重。
+ */
+@Component
+@Slf4j
+public class WebSocketReplayBuffer {
+
+    //补发消息类型
+    private static final int REPLAY = 3;
+
+    @Value("${sky.websocket.replay-capacity:500}")
+    private long capacity;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 保存消息并删除超出容量的最早消息
+     *
+     * @param seq  消息序号
+     * @param body 消息内容
+     */
+    public void add(long seq, String body) {
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.zAdd(RedisConstant.WEBSOCKET_REPLAY_KEY, seq, body);
+            conn.zRemRange(RedisConstant.WEBSOCKET_REPLAY_KEY, 0, -capacity - 1);
+            return null;
+        });
+    }
+
+    /**
+     * 生成 lastSeq 之后全部消息的补发消息
+     *
+     * @param lastSeq 客户端最后收到的消息序号
+     * @return
+     */
+    public String replay(long lastSeq) {
+        // 先读取当前序号，之后发布的消息不影响判断
+        String currentValue = stringRedisTemplate.opsForValue().get(RedisConstant.WEBSOCKET_SEQ_KEY);
+        long currentSeq = currentValue == null ? 0 : Long.parseLong(currentValue);
+        Set<ZSetOperations.TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet()
+                .rangeByScoreWithScores(RedisConstant.WEBSOCKET_REPLAY_KEY, lastSeq + 1, Double.POSITIVE_INFINITY);
+
+        // 序号从 lastSeq + 1 起连续且至少到当前序号才算完整；客户端序号大于当前序号说明序号被重置过
+        boolean complete = lastSeq <= currentSeq;
+        long expectedSeq = lastSeq + 1;
+        JSONArray events = new JSONArray();
+        if (tuples != null) {
+            for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+                long seq = tuple.getScore() == null ? 0 : tuple.getScore().longValue();
+                if (seq != expectedSeq) {
+                    complete = false;
+                }
+                expectedSeq = seq + 1;
+                events.add(JSON.parseObject(tuple.getValue()));
+            }
+        }
+        if (expectedSeq <= currentSeq) {
+            complete = false;
+        }
+
+        JSONObject message = new JSONObject();
+        message.put("type", REPLAY);
+        message.put("events", events);
+        message.put("complete", complete);
+        return message.toJSONString();
+    }
+}
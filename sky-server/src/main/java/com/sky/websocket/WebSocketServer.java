@@ -1,34 +1,82 @@
 package com.sky.websocket;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Resource;
+import javax.websocket.CloseReason;
 import javax.websocket.OnClose;
+import javax.websocket.OnError;
 import javax.websocket.OnMessage;
 import javax.websocket.OnOpen;
 import javax.websocket.Session;
 import javax.websocket.server.PathParam;
 import javax.websocket.server.ServerEndpoint;
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * WebSocket服务
  */
 @Component
 @ServerEndpoint("/ws/{sid}")
+@Slf4j
 public class WebSocketServer {
 
+    //每个连接最多积压的消息数
+    private static final int QUEUE_CAPACITY = 256;
+
+    //连续丢弃的消息达到该数量时关闭连接
+    private static final int MAX_DROPPED = 256;
+
+    //重连时携带最后收到的消息序号的参数名
+    private static final String LAST_SEQ_PARAM = "lastSeq";
+
     //存放会话对象
-    private static Map<String, Session> sessionMap = new HashMap<>();
+    private static final Map<String, WebSocketClient> clientMap = new ConcurrentHashMap<>();
+
+    //每个连接都会创建新的端点实例，依赖保存在静态字段中
+    private static WebSocketReplayBuffer replayBuffer;
+
+    @Resource
+    public void setReplayBuffer(WebSocketReplayBuffer replayBuffer) {
+        WebSocketServer.replayBuffer = replayBuffer;
+    }
 
     /**
-     * 连接建立成功调用的方法
+     * 连接建立成功调用的方法，重连时补发断线期间的消息
      */
     @OnOpen
     public void onOpen(Session session, @PathParam("sid") String sid) {
-        System.out.println("客户端：" + sid + "建立连接");
-        sessionMap.put(sid, session);
+        log.info("客户端：{}建立连接", sid);
+        WebSocketClient client = new WebSocketClient(sid, session, QUEUE_CAPACITY, MAX_DROPPED);
+        WebSocketClient previous = clientMap.put(sid, client);
+        if (previous != null && previous.getSession() != session) {
+            previous.close(new CloseReason(CloseReason.CloseCodes.NORMAL_CLOSURE, "replaced by new connection"));
+        }
+
+        // 先登记连接再读取缓冲区，期间发布的消息最多重复，不会遗漏
+        Long lastSeq = getLastSeq(session);
+        if (lastSeq != null && replayBuffer != null) {
+            try {
+                client.send(replayBuffer.replay(lastSeq));
+            } catch (Exception e) {
+                log.warn("向客户端{}补发消息失败：{}", sid, e.getMessage());
+            }
+        }
+    }
+
+    private Long getLastSeq(Session session) {
+        List<String> values = session.getRequestParameterMap().get(LAST_SEQ_PARAM);
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        try {
+            return Long.valueOf(values.get(0));
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 
     /**
@@ -38,7 +86,7 @@ public class WebSocketServer {
      */
     @OnMessage
     public void onMessage(String message, @PathParam("sid") String sid) {
-        System.out.println("收到来自客户端：" + sid + "的信息:" + message);
+        log.info("收到来自客户端：{}的信息:{}", sid, message);
     }
 
     /**
@@ -47,24 +95,26 @@ public class WebSocketServer {
      * @param sid
      */
     @OnClose
-    public void onClose(@PathParam("sid") String sid) {
-        System.out.println("连接断开:" + sid);
-        sessionMap.remove(sid);
+    public void onClose(Session session, @PathParam("sid") String sid) {
+        log.info("连接断开:{}", sid);
+        // 同一sid重新连接后，旧连接的关闭不能移除新连接
+        clientMap.computeIfPresent(sid, (k, client) -> client.getSession() == session ? null : client);
+    }
+
+    @OnError
+    public void onError(Session session, Throwable error, @PathParam("sid") String sid) {
+        log.warn("客户端{}连接异常：{}", sid, error.getMessage());
     }
 
     /**
-     * 群发
+     * 群发，消息放入每个连接的发送队列后立即返回
      *
      * @param message
      */
     public void sendToAllClient(String message) {
-        Collection<Session> sessions = sessionMap.values();
-        for (Session session : sessions) {
-            try {
-                //服务器向客户端发送消息
-                session.getBasicRemote().sendText(message);
-            } catch (Exception e) {
-                e.printStackTrace();
+        for (Map.Entry<String, WebSocketClient> entry : clientMap.entrySet()) {
+            if (!entry.getValue().send(message)) {
+                clientMap.remove(entry.getKey(), entry.getValue());
             }
         }
     }
@@ -0,0 +1,30 @@
+-- 购物车同一用户同一商品只保留一行，ShoppingCartMapper 的 upsert/insertBatch 依赖该唯一索引
+-- dish_id/setmeal_id/dish_flavor 可为 null，唯一索引建立在生成列 item_key 上
+
+-- 合并已有的重复行：数量累加到id最小的一行，删除其余行
+update shopping_cart sc
+    join (select min(id) as keep_id, sum(number) as total
+          from shopping_cart
+          group by user_id, ifnull(dish_id, 0), ifnull(setmeal_id, 0), ifnull(dish_flavor, '')
+          having count(*) > 1) dup on sc.id = dup.keep_id
+set sc.number = dup.total;
+
+delete sc
+from shopping_cart sc
+         join (select user_id,
+                      ifnull(dish_id, 0)      as dish_id,
+                      ifnull(setmeal_id, 0)   as setmeal_id,
+                      ifnull(dish_flavor, '') as dish_flavor,
+                      min(id)                 as keep_id
+               from shopping_cart
+               group by user_id, ifnull(dish_id, 0), ifnull(setmeal_id, 0), ifnull(dish_flavor, '')
+               having count(*) > 1) dup
+              on sc.user_id = dup.user_id
+                  and ifnull(sc.dish_id, 0) = dup.dish_id
+                  and ifnull(sc.setmeal_id, 0) = dup.setmeal_id
+                  and ifnull(sc.dish_flavor, '') = dup.dish_flavor
+                  and sc.id <> dup.keep_id;
+
+alter table shopping_cart
+    add column item_key varchar(128) as (concat_ws(':', ifnull(dish_id, 0), ifnull(setmeal_id, 0), ifnull(dish_flavor, ''))) stored,
+    add unique key uk_user_item (user_id, item_key);
@@ -0,0 +1,44 @@
+-- 营业数据日汇总表，sky.report.rollup-enabled 开启前执行
+create table if not exists business_daily
+(
+    date              date           not null primary key comment '日期',
+    turnover          decimal(12, 2) not null default 0 comment '营业额（已完成订单金额）',
+    order_count       int            not null default 0 comment '订单总数',
+    valid_order_count int            not null default 0 comment '有效订单数（已完成）',
+    new_users         int            not null default 0 comment '新增用户数',
+    update_time       datetime comment '更新时间'
+) comment '营业数据日汇总';
+
+create table if not exists dish_sales_daily
+(
+    date   date        not null comment '日期',
+    name   varchar(32) not null comment '商品名称',
+    number int         not null default 0 comment '销量',
+    primary key (date, name)
+) comment '商品销量日汇总';
+
+-- 按订单表和用户表回填历史数据，口径与 BusinessDailyMapper.rebuild / DishSalesDailyMapper.rebuild 一致
+delete from business_daily;
+insert into business_daily (date, turnover, order_count, valid_order_count, new_users, update_time)
+select date, sum(turnover), sum(order_count), sum(valid_order_count), sum(new_users), now()
+from (select DATE(order_time)               as date,
+             SUM(IF(status = 5, amount, 0)) as turnover,
+             COUNT(id)                      as order_count,
+             SUM(status = 5)                as valid_order_count,
+             0                              as new_users
+      from orders
+      group by DATE(order_time)
+      union all
+      select DATE(create_time), 0, 0, 0, COUNT(id)
+      from user
+      group by DATE(create_time)) t
+group by date;
+
+delete from dish_sales_daily;
+insert into dish_sales_daily (date, name, number)
+select DATE(o.order_time), od.name, SUM(od.number)
+from orders o,
+     order_detail od
+where od.order_id = o.id
+  and o.status = 5
+group by DATE(o.order_time), od.name;